@@ -5,6 +5,11 @@
 package tal;
 
 import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
 /**
  * Base class to implement a lexical analyser by means of a
@@ -12,13 +17,87 @@ import java.io.*;
  */
 public class ALex
 {
-private final Reader m_is;
+private static final int BUFFER_SIZE = 8192;
+private final Source m_source;
+private final char[] m_buffer = new char[BUFFER_SIZE];
+private int m_position, m_limit, m_bufferOffset, m_origin;
+
+// Text encoded in UTF-8 that is read without a decoder.
+private final ByteBuffer m_bytes;
+private int m_bytePosition, m_byteLimit;
+private char m_lowSurrogate;
+
 private char m_char;
 private boolean m_charReaded, m_reading;
-private int m_row = 1, m_column;
+private int m_offset = -1;
+private LineIndex m_lines = new LineIndex(0, 1);
 private final StringBuilder m_name = new StringBuilder();
+private int m_nameOffset, m_nameEnd, m_scanStart;
+private boolean m_nameInText;
 private Token m_token;
+private Token.Type m_type;
+private Symbols m_symbols = new Symbols();
+
+// Tokens read by tokenize and characters of the text they come from.
+private TokenBuffer m_tokens;
+private StringBuilder m_text;
 private Runnable m_state, m_start;
+private Table m_table;
+private boolean m_tableStart, m_ended, m_endsAtStart;
+private boolean m_probing, m_probeError;
+
+// Actions of the transition table.
+static final int STATE   = 0,
+                 NOCHAR  = 1,
+                 RESTART = 2,
+                 TOKEN   = 3,
+                 ERROR   = 4;
+
+private static final Token.Type TYPES[] = Token.Type.values();
+
+/** Class of the characters valid at the beginning of an identifier. */
+public static final int CHAR_ID_START = 1;
+/** Class of the characters valid in an identifier. */
+public static final int CHAR_ID = 2;
+/** Class of the digits. */
+public static final int CHAR_DIGIT = 4;
+/** Class of the spaces, tabulations, line breaks, ... */
+public static final int CHAR_SPACE = 8;
+/** Class of the end of file. */
+public static final int CHAR_EOF = 16;
+
+// Classes of the ASCII characters.
+private static final byte ASCII[] = new byte[128];
+
+static
+{
+    for(char c = 0; c < ASCII.length; c++)
+        ASCII[c] = (byte)classify(c);
+}
+
+// Transition tables already compiled for each analyser class
+// and class of the initial state.
+private static final Map<List<Class<?>>,Table>
+    TABLES = new ConcurrentHashMap<>();
+
+/**
+ * Transition table of a compiled automaton.
+ */
+private static class Table
+{
+    // Character class of each character.
+    private final char[] classes;
+    // Action of each state and character class.
+    // The low bits keep the action and the high bits its argument:
+    // the first entry of the target state or the token type.
+    private final int[] actions;
+
+    private Table(char[] classes, int[] actions)
+    {
+        this.classes = classes;
+        this.actions = actions;
+    }
+} // Table
 
 /**
  * Build a lexical analyser.
@@ -27,7 +106,25 @@ private Runnable m_state, m_start;
  */
 public ALex(String file) throws IOException
 {
-    m_is = new BufferedReader(new FileReader(file));
+    this(Source.of(new FileReader(file)));
+}
+
+/**
+ * Build a lexical analyser.
+ * @param source Text that must be analysed
+ * @see Source
+ */
+public ALex(Source source)
+{
+    m_source = source;
+    m_bytes  = source.utf8();
+
+    if(m_bytes != null)
+    {
+        m_bytePosition = m_bytes.position();
+        m_byteLimit    = m_bytes.limit();
+        m_lines = new LineIndex(m_bytes, m_bytePosition);
+    }
 }
 
 /**
@@ -55,21 +152,161 @@ public void restart()
 }
 
 /**
- * Close the text file that has been analysed.
+ * Close the text that has been analysed.
  * @throws IOException
  */
 public void close() throws IOException
 {
-    m_is.close();
+    m_source.close();
+}
+
+/**
+ * Indicate the position of the first character of the source
+ * in a larger text, so offsets and errors refer to that text.
+ * The source must begin at the beginning of a line.
+ * @param offset Offset of the first character
+ * @param row    Row of the first character
+ */
+void setOrigin(int offset, int row)
+{
+    m_origin = m_bufferOffset = offset;
+    m_offset = offset - 1;
+    m_lines = new LineIndex(offset, row);
+}
+
+/**
+ * Indicate the position of the first character of the source
+ * in a larger text, whose lines and identifiers are already known.
+ * The source may begin at any token boundary.
+ * @param offset  Offset of the first character
+ * @param lines   Index of the lines of the whole text
+ * @param symbols Symbol table where the identifiers will be added
+ */
+void setOrigin(int offset, LineIndex lines, Symbols symbols)
+{
+    m_origin = m_bufferOffset = offset;
+    m_offset = offset - 1;
+    m_lines = lines;
+    m_symbols = symbols;
 }
 
 /**
- * Read the following token from the text file.
+ * Get the offset of the current character.
+ * @return offset of the current character
+ */
+int offset()
+{
+    return m_offset;
+}
+
+/**
+ * Get the offsets where the lines of the text begin.
+ * @return index of the lines read
+ */
+LineIndex lines()
+{
+    return m_lines;
+}
+
+/**
+ * Indicates if the end of the text was found in the initial state
+ * without characters read, that is, out of any token.
+ * @return {@code true} if the text ends out of any token
+ */
+boolean endsAtStart()
+{
+    return m_endsAtStart;
+}
+
+/**
+ * Read the following token from the text.
  * @return read token
  * @throws IOException
  */
 public Token read() throws IOException
 {
+    scan();
+    return m_token;
+}
+
+/**
+ * Read all the tokens of the text and store them packed in a buffer.
+ * <p>No {@code Token} object is created, and the names of the tokens
+ * are taken from the text only when they are requested.
+ * The characters of the text are kept in memory until the buffer
+ * is discarded.
+ * @return tokens from the current position to the end of the text
+ * @throws IOException
+ */
+public TokenBuffer tokenize() throws IOException
+{
+    return tokenize(offset -> false);
+}
+
+/**
+ * Read the tokens of the text until the end or until the analyser
+ * is going to read a token at an offset accepted by a predicate.
+ * @param stop Predicate of the offset where the next token begins
+ *             to be read, including the blanks before it
+ * @return tokens read
+ * @throws IOException
+ */
+TokenBuffer tokenize(IntPredicate stop) throws IOException
+{
+    CharSequence text = m_source.text();
+    int textOffset = m_origin;
+
+    if(m_bytes != null)
+    {
+        m_tokens = new TokenBuffer(m_bytes, m_lines, m_symbols);
+    }
+    else if(text == null)
+    {
+        // The characters are stored as they are read.
+        m_text = new StringBuilder();
+        m_text.append(m_buffer, 0, m_limit);
+        textOffset = m_bufferOffset;
+        m_tokens = new TokenBuffer(m_text, textOffset, m_lines, m_symbols);
+    }
+    else
+    {
+        m_tokens = new TokenBuffer(text, textOffset, m_lines, m_symbols);
+    }
+
+    try
+    {
+        do scan();
+        while(m_type != Token.Type.EOF && !stop.test(nextOffset()));
+
+        return m_tokens;
+    }
+    finally
+    {
+        m_tokens = null;
+        m_text = null;
+    }
+}
+
+// Offset of the character that will be read.
+private int nextOffset()
+{
+    if(m_charReaded)
+        return m_offset;
+    else
+        return m_bytes == null ? m_offset + 1 : m_bytePosition;
+}
+
+private void scan() throws IOException
+{
+    m_scanStart = nextOffset();
+    m_nameInText = true;
+
+    if(m_table != null)
+    {
+        scanTable();
+        return;
+    }
+
     m_reading = true;
     restart();
 
@@ -78,8 +315,213 @@ public Token read() throws IOException
         readChar();
         m_state.run();
     }
+}
 
-    return m_token;
+private void scanTable() throws IOException
+{
+    final char[] classes = m_table.classes;
+    final int[]  actions = m_table.actions;
+    int state = 0;
+    m_name.setLength(0);
+
+    for(;;)
+    {
+        readChar();
+        int action = actions[state + classes[m_char]];
+
+        switch(action & 7)
+        {
+            case STATE:
+                append();
+                state = action >>> 3;
+                break;
+            case NOCHAR:
+                state = action >>> 3;
+                break;
+            case RESTART:
+                m_name.setLength(0);
+                state = 0;
+                break;
+            case TOKEN:
+                m_tableStart = state == 0;
+                token(TYPES[action >>> 3]);
+                return;
+            default:
+                error();
+        }
+    }
+}
+
+/**
+ * Turn the automaton into a transition table, so the function
+ * {@link #read read} does not need to run the states.
+ * <p>The states are run once for each character to know their
+ * transitions, so they must be method references of the analyser,
+ * as {@code this::s_start}, whose actions depend only on the next
+ * character. Each state is identified by the class of its method
+ * reference, so a state cannot capture other values, and the same
+ * method referenced in two places gives two equal states.
+ * <p>The table is compiled once for each class of analyser and
+ * initial state, and shared by their instances. So the transitions
+ * cannot depend on the fields of an instance, for example, on the
+ * arguments of its constructor.
+ * The initial state must have been indicated before.
+ */
+public void compile()
+{
+    if(m_start == null)
+        throw new AssertionError("The initial state is not indicated.");
+
+    m_table = TABLES.computeIfAbsent(
+        Arrays.asList(getClass(), m_start.getClass()),
+        c -> compileTable());
+}
+
+/**
+ * Use a transition table built out of the analyser, for example,
+ * by {@link LexGenerator}, so the states are not needed.
+ * @param classes Character class of each character
+ * @param actions Action of each state and character class
+ */
+void setTable(char[] classes, int[] actions)
+{
+    m_table = new Table(classes, actions);
+}
+
+private Table compileTable()
+{
+    // Each state is identified by the class of its method reference.
+    Map<Class<?>,Integer> ids = new HashMap<>();
+    List<Runnable> states = new ArrayList<>();
+    List<int[]> rows = new ArrayList<>();
+    checkState(m_start);
+    ids.put(m_start.getClass(), 0);
+    states.add(m_start);
+
+    // Character classes are refined with the transitions of each state.
+    char[] classes = new char[Character.MAX_VALUE + 1];
+    int numClasses = 1;
+    Map<Long,Integer> refined = new HashMap<>();
+    m_probing = true;
+
+    try
+    {
+        for(int i = 0; i < states.size(); i++)
+        {
+            int[] row = new int[classes.length];
+            refined.clear();
+
+            long last = -1;
+            int k = 0;
+
+            for(int c = 0; c < classes.length; c++)
+            {
+                row[c] = probe(states.get(i), i, (char)c, ids, states);
+                long key = (long)classes[c] << 32 | row[c];
+
+                if(key != last)
+                {
+                    last = key;
+                    k = refined.computeIfAbsent(key, x -> refined.size());
+                }
+
+                classes[c] = (char)k;
+            }
+
+            numClasses = refined.size();
+            rows.add(row);
+        }
+    }
+    finally
+    {
+        m_probing = false;
+        m_name.setLength(0);
+        m_state = null;
+        m_token = null;
+        m_reading = m_charReaded = m_ended = false;
+    }
+
+    int[] actions = new int[states.size() * numClasses];
+
+    for(int i = 0; i < states.size(); i++)
+    {
+        int[] row = rows.get(i);
+
+        for(int c = 0; c < classes.length; c++)
+        {
+            int a = row[c], op = a & 7;
+
+            if(op == STATE || op == NOCHAR)
+                a = (a >>> 3) * numClasses << 3 | op;
+
+            actions[i * numClasses + classes[c]] = a;
+        }
+    }
+
+    return new Table(classes, actions);
+}
+
+private int probe(Runnable state, int id, char c,
+                  Map<Class<?>,Integer> ids, List<Runnable> states)
+{
+    m_char = c;
+    m_name.setLength(0);
+    m_state = null;
+    m_reading = true;
+    m_probeError = false;
+    state.run();
+
+    if(m_probeError)
+        return ERROR;
+    else if(!m_reading)
+        return m_token.type.ordinal() << 3 | TOKEN;
+    else if(m_state == null)
+        return id << 3 | NOCHAR;
+    else if(m_state == m_start && m_name.length() == 0)
+        return RESTART;
+
+    Integer target = ids.get(m_state.getClass());
+
+    if(target == null)
+    {
+        checkState(m_state);
+        target = states.size();
+        ids.put(m_state.getClass(), target);
+        states.add(m_state);
+    }
+
+    return target << 3 | (m_name.length() == 0 ? NOCHAR : STATE);
+}
+
+// A state identified by its class cannot keep values other than the
+// analyser, because states of the same class with different values
+// would be taken as the same state.
+private void checkState(Runnable state)
+{
+    for(Field f : state.getClass().getDeclaredFields())
+    {
+        if(Modifier.isStatic(f.getModifiers()))
+            continue;
+
+        Object value;
+
+        try
+        {
+            f.setAccessible(true);
+            value = f.get(state);
+        }
+        catch(ReflectiveOperationException | RuntimeException e)
+        {
+            throw new AssertionError("The state cannot be checked: "+
+                                     state, e);
+        }
+
+        if(value != this)
+        {
+            throw new AssertionError("The states compiled to a table "+
+                "cannot capture values other than the analyser: "+ state);
+        }
+    }
 }
 
 private void readChar() throws IOException
@@ -88,39 +530,214 @@ private void readChar() throws IOException
     {
         m_charReaded = false;
     }
+    else if(m_bytes != null)
+    {
+        readByte();
+    }
     else
     {
-        m_char = (char)m_is.read();
-        m_column++;
+        if(m_position < m_limit || fill())
+            m_char = m_buffer[m_position++];
+        else
+            m_char = Character.MAX_VALUE;
+
+        m_offset++;
+    }
+}
+
+private void readByte()
+{
+    int p = m_bytePosition;
+    m_offset = p;
+
+    if(p < m_byteLimit && m_lowSurrogate == 0)
+    {
+        byte b = m_bytes.get(p);
+
+        if(b >= 0)
+        {
+            // All the characters of tal out of strings are ASCII.
+            m_char = (char)b;
+            m_bytePosition = p + 1;
+        }
+        else
+        {
+            decodeUtf8(p, b);
+        }
+    }
+    else if(m_lowSurrogate != 0)
+    {
+        // Second half of a character encoded with 4 bytes.
+        m_char = m_lowSurrogate;
+        m_lowSurrogate = 0;
+        m_bytePosition = p + 2;
+    }
+    else
+    {
+        m_char = Character.MAX_VALUE;
+        m_bytePosition = p + 1;
+    }
+}
+
+// Decode a character of several bytes.
+private void decodeUtf8(int p, int b)
+{
+    int length = (b & 0xE0) == 0xC0 ? 2 :
+                 (b & 0xF0) == 0xE0 ? 3 :
+                 (b & 0xF8) == 0xF0 ? 4 : 0;
+
+    int c = b & (0x7F >> length);
+
+    for(int i = 1; i < length; i++)
+    {
+        int n = p + i < m_byteLimit ? m_bytes.get(p + i) : 0;
 
-        if(m_char == '\n')
+        if((n & 0xC0) != 0x80)
         {
-            m_row++;
-            m_column = 0;
+            length = 0;
+            break;
         }
+
+        c = c << 6 | (n & 0x3F);
+    }
+
+    if(length == 0 || c < (length == 2 ? 0x80 : length == 3 ? 0x800
+                                                          : 0x10000)
+                   || c > Character.MAX_CODE_POINT
+                   || (c >= Character.MIN_SURROGATE &&
+                       c <= Character.MAX_SURROGATE))
+    {
+        // Malformed sequence.
+        m_char = '\uFFFD';
+        m_bytePosition = p + 1;
+    }
+    else if(length == 4)
+    {
+        m_char = Character.highSurrogate(c);
+        m_lowSurrogate = Character.lowSurrogate(c);
+        m_bytePosition = p + 2;
+    }
+    else
+    {
+        m_char = (char)c;
+        m_bytePosition = p + length;
     }
 }
 
+private boolean fill() throws IOException
+{
+    // The characters not read yet are moved to the beginning.
+    int kept = m_limit - m_position, n;
+    System.arraycopy(m_buffer, m_position, m_buffer, 0, kept);
+    m_bufferOffset += m_position;
+    m_position = 0;
+    m_limit = kept;
+
+    do n = m_source.read(m_buffer, kept, m_buffer.length - kept);
+    while(n == 0);
+
+    if(n < 0)
+        return false;
+
+    m_limit += n;
+    m_lines.scan(m_buffer, kept, m_limit, m_bufferOffset);
+
+    if(m_text != null)
+        m_text.append(m_buffer, kept, n);
+
+    return true;
+}
+
 /**
  * Interrupt the compilation with an exception in case a
  * non-allowed character is read.
  */
 public void error()
 {
+    if(m_probing)
+    {
+        // The state is being compiled.
+        m_probeError = true;
+        return;
+    }
+
     throw new RuntimeException("Non-allowed character in "+
-                               m_row +":"+ m_column +" : '"+ m_char +"'");
+                               m_lines.row(m_offset) +":"+
+                               m_lines.column(m_offset) +
+                               " : '"+ m_char +"'");
+}
+
+/**
+ * Get the symbol table with the identifiers read.
+ * @return symbol table
+ */
+public Symbols symbols()
+{
+    return m_symbols;
 }
 
 /**
  * When a state of the automaton finishes reading a token it
  * must call this function.
  * The states that call this function will be final.
+ * <p>The identifiers that are reserved words get the type of
+ * the reserved word, so the automaton does not need states to
+ * recognize them.
  * @param t Read token type
  */
 public void token(Token.Type t)
 {
-    m_token = new Token(t, m_name.toString(),
-                        m_row, m_column - m_name.length());
+    if(m_probing)
+    {
+        // The state is being compiled: only the type is needed, and
+        // the empty name must not be added to the symbol table.
+        m_token = new Token(t, "", m_offset, m_lines, -1);
+        m_reading = false;
+        return;
+    }
+
+    int length = m_name.length(), id = -1;
+    String name = null;
+
+    if(m_char == Character.MAX_VALUE && !m_ended)
+    {
+        // First token whose next character is the end of the text.
+        m_ended = true;
+        m_endsAtStart = length == 0 &&
+            (m_table == null ? m_state == m_start : m_tableStart);
+    }
+
+    if(t == Token.Type.ID)
+    {
+        Token.Type word = Symbols.keyword(m_name);
+
+        if(word != null)
+        {
+            t = word;
+            name = Symbols.keywordName(word);
+        }
+        else
+        {
+            id = m_symbols.id(m_name);
+            name = m_symbols.name(id);
+        }
+    }
+
+    int offset = length == 0 ? m_offset : m_nameOffset;
+
+    if(m_tokens == null)
+    {
+        m_token = new Token(t, name != null ? name : m_name.toString(),
+                            offset, m_lines, id);
+    }
+    else
+    {
+        m_tokens.add(t, m_scanStart, offset,
+                     length == 0 ? 0 : m_nameEnd - offset, id,
+                     m_nameInText ? null : m_name.toString());
+    }
+
+    m_type = t;
     m_reading = false;
     m_charReaded = true;
 }
@@ -132,10 +749,23 @@ public void token(Token.Type t)
  */
 public void state(Runnable s)
 {
-    m_name.append(m_char);
+    append();
     m_state = s;
 }
 
+private void append()
+{
+    int length = m_name.length();
+
+    if(length == 0)
+        m_nameOffset = m_offset;
+    else if(m_nameEnd != m_offset)
+        m_nameInText = false;
+
+    m_nameEnd = m_bytes == null ? m_offset + 1 : m_bytePosition;
+    m_name.append(m_char);
+}
+
 /**
  * This function does the same thing as {@code state} but
  * does not add the read character to the name of the token.
@@ -149,6 +779,96 @@ public void stateNoChar(Runnable s)
     m_state = s;
 }
 
+/**
+ * Get the next character.
+ * @return next character
+ */
+protected char getChar()
+{
+    return m_char;
+}
+
+/**
+ * Get a character after the next one without reading it,
+ * so a state can recognize several characters at once.
+ * The states that look ahead cannot be compiled to a table.
+ * @param n Position of the character after the next one,
+ *          {@code peek(0)} is the next character
+ * @return character, or {@code Character.MAX_VALUE} at the end
+ *         of the text
+ */
+public char peek(int n)
+{
+    if(m_probing)
+        throw new AssertionError("The states that look ahead "+
+                                 "cannot be compiled.");
+    if(n <= 0)
+        return m_char;
+    else if(n >= BUFFER_SIZE)
+        throw new IllegalArgumentException("Too long lookahead: "+ n);
+
+    try
+    {
+        if(m_bytes != null)
+            return peekByte(n);
+
+        while(m_position + n > m_limit)
+        {
+            if(!fill())
+                return Character.MAX_VALUE;
+        }
+
+        return m_buffer[m_position + n - 1];
+    }
+    catch(IOException ex)
+    {
+        throw new UncheckedIOException(ex);
+    }
+}
+
+private char peekByte(int n)
+{
+    int offset = m_offset, position = m_bytePosition;
+    char c = m_char, low = m_lowSurrogate;
+
+    for(int i = 0; i < n; i++)
+        readByte();
+
+    char peeked = m_char;
+    m_offset = offset;
+    m_bytePosition = position;
+    m_char = c;
+    m_lowSurrogate = low;
+    return peeked;
+}
+
+/**
+ * Add the next character and the following ones to the name of
+ * the token. The character after them becomes the next character,
+ * so the state must still indicate what to do with it, for example,
+ * calling {@link #token token}.
+ * The states that look ahead cannot be compiled to a table.
+ * @param n Number of characters to add
+ */
+public void consume(int n)
+{
+    if(m_probing)
+        throw new AssertionError("The states that look ahead "+
+                                 "cannot be compiled.");
+    try
+    {
+        for(int i = 0; i < n; i++)
+        {
+            append();
+            readChar();
+        }
+    }
+    catch(IOException ex)
+    {
+        throw new UncheckedIOException(ex);
+    }
+}
+
 /**
  * Indicates if the next character matches the indicated one.
  * @param c Character to compare
@@ -159,6 +879,43 @@ public boolean isChar(char c)
     return m_char == c;
 }
 
+private static int classify(char c)
+{
+    int classes = 0;
+
+    if(Character.isLetter(c) || c == '_')
+        classes |= CHAR_ID_START | CHAR_ID;
+
+    if(Character.isDigit(c))
+        classes |= CHAR_DIGIT | CHAR_ID;
+
+    if(Character.isWhitespace(c))
+        classes |= CHAR_SPACE;
+
+    if(c == Character.MAX_VALUE)
+        classes |= CHAR_EOF;
+
+    return classes;
+}
+
+private int charClasses()
+{
+    char c = m_char;
+    return c < ASCII.length ? ASCII[c] : classify(c);
+}
+
+/**
+ * Indicates if the next character belongs to any of the indicated
+ * classes, so several classes can be checked with only one lookup.
+ * For example: {@code isCharClass(CHAR_DIGIT | CHAR_SPACE)}.
+ * @param classes Classes {@code CHAR_*} combined with {@code |}
+ * @return {@code true} if the character belongs to any class
+ */
+public boolean isCharClass(int classes)
+{
+    return (charClasses() & classes) != 0;
+}
+
 /**
  * Indicates whether the next character is valid for the
  * beginning of the name of an identifier.
@@ -166,8 +923,7 @@ public boolean isChar(char c)
  */
 public boolean isIdCharStart()
 {
-    return Character.isLetter(m_char) ||
-           m_char == '_';
+    return (charClasses() & CHAR_ID_START) != 0;
 }
 
 /**
@@ -178,9 +934,7 @@ public boolean isIdCharStart()
  */
 public boolean isIdChar()
 {
-    return Character.isLetter(m_char) ||
-           Character.isDigit(m_char)  ||
-           m_char == '_';
+    return (charClasses() & CHAR_ID) != 0;
 }
 
 /**
@@ -189,7 +943,7 @@ public boolean isIdChar()
  */
 public boolean isDigitChar()
 {
-    return Character.isDigit(m_char);
+    return (charClasses() & CHAR_DIGIT) != 0;
 }
 
 /**
@@ -198,7 +952,7 @@ public boolean isDigitChar()
  */
 public boolean isSpaceChar()
 {
-    return Character.isWhitespace(m_char);
+    return (charClasses() & CHAR_SPACE) != 0;
 }
 
 /**
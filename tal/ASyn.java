@@ -5,6 +5,7 @@
 package tal;
 
 import java.io.*;
+import java.util.*;
 
 /**
  * Base class to implement a syntactic analyser using the
@@ -12,10 +13,53 @@ import java.io.*;
  */
 public class ASyn
 {
+// Precedence levels of the expressions.
+private static final int LEVEL_OR  = 1,
+                         LEVEL_AND = 2,
+                         LEVEL_NOT = 3,
+                         LEVEL_REL = 4,
+                         LEVEL_SUM = 5,
+                         LEVEL_MUL = 6,
+                         LEVEL_MAX = 7;
+
+/**
+ * Level of an expression being analysed by {@link #expression}
+ * and what must be done when it finishes.
+ */
+private static class Level
+{
+    // Levels of the operators that can be read in this level.
+    private final int min;
+    private int max = LEVEL_MAX;
+
+    private final String operator;
+    private final boolean parenthesis;
+
+    // Highest level that the parent can read after this one. The
+    // operators of higher levels would have been read here, and a
+    // relational operator cannot follow another one.
+    private final int parentMax;
+
+    private Level(int min, String operator,
+                  boolean parenthesis, int parentMax)
+    {
+        this.min         = min;
+        this.operator    = operator;
+        this.parenthesis = parenthesis;
+        this.parentMax   = parentMax;
+    }
+} // Level
+
 private final ALex m_lex;
-private final Code m_code;
+private Backend m_code;
 private Token m_token, m_previous;
 
+// Tokens read from a pipe or a buffer instead of the lexical analyser.
+private final TokenPipe m_pipe;
+private final TokenBuffer m_tokens;
+private final TokenBuffer.Cursor m_cursor;
+private int m_previousIndex;
+
 /**
  * Build a syntactic analyser from a lexical analyser.
  * @param lex lexical analyser
@@ -24,24 +68,80 @@ public ASyn(ALex lex)
 {
     m_lex = lex;
     m_code = new Code();
+    m_pipe = null;
+    m_tokens = null;
+    m_cursor = null;
     ASyn.this.tokenRead();
 }
 
+/**
+ * Build a syntactic analyser that reads the tokens from a lexical
+ * analyser running in another thread.
+ * @param pipe tokens read by the lexical analyser
+ */
+public ASyn(TokenPipe pipe)
+{
+    m_lex = null;
+    m_code = new Code();
+    m_pipe = pipe;
+    m_tokens = null;
+    m_cursor = null;
+    ASyn.this.tokenRead();
+}
+
+/**
+ * Build a syntactic analyser from the tokens of a buffer.
+ * The tokens are not converted to {@code Token} objects,
+ * except those used in code generation.
+ * @param tokens tokens of the text
+ * @see ALex#tokenize()
+ */
+public ASyn(TokenBuffer tokens)
+{
+    m_lex = null;
+    m_code = new Code();
+    m_pipe = null;
+    m_tokens = tokens;
+    m_cursor = tokens.cursor();
+}
+
+/**
+ * Set the destination of the generated code, instead of {@code Code}.
+ * It must be set before generating any code.
+ * <p>For example, an {@link Ast} keeps the structure of the program
+ * to analyse or transform it before generating its code.
+ * @param backend destination of the generated code
+ */
+public void codeBackend(Backend backend)
+{
+    m_code = backend;
+}
+
 /**
  * Close the lexical analyzer.
  * @throws IOException
  */
 public void close() throws IOException
 {
-    m_lex.close();
+    if(m_lex != null)
+        m_lex.close();
+    else if(m_pipe != null)
+        m_pipe.close();
 }
 
 private void tokenRead()
 {
+    if(m_cursor != null)
+    {
+        m_previousIndex = m_cursor.index();
+        m_cursor.next();
+        return;
+    }
+
     try
     {
         m_previous = m_token;
-        m_token = m_lex.read();
+        m_token = m_pipe != null ? m_pipe.read() : m_lex.read();
     }
     catch(IOException ex)
     {
@@ -58,11 +158,13 @@ private void tokenRead()
  */
 public void tokenRead(Token.Type t)
 {
-    if(m_token.type != t)
+    if(tokenType() != t)
     {
+        Token token = m_cursor != null ? m_tokens.token(m_cursor.index())
+                                       : m_token;
         throw new RuntimeException(
-            "Error ("+ m_token.row +":"+ m_token.column +
-            "): "+ m_token +". Expected: "+ t);
+            "Error ("+ token.row() +":"+ token.column() +
+            "): "+ token +". Expected: "+ t);
     }
 
     tokenRead();
@@ -74,7 +176,7 @@ public void tokenRead(Token.Type t)
  */
 public Token.Type tokenType()
 {
-    return m_token.type;
+    return m_cursor != null ? m_cursor.type() : m_token.type;
 }
 
 /**
@@ -83,7 +185,148 @@ public Token.Type tokenType()
  */
 public String tokenName()
 {
-    return m_token.name;
+    return m_cursor != null ? m_cursor.name() : m_token.name;
+}
+
+private Token previous()
+{
+    return m_cursor != null ? m_tokens.token(m_previousIndex) : m_previous;
+}
+
+/**
+ * Analyse a list of elements with a loop, instead of a recursive
+ * production as {@code list -> element list | @}, so the depth of
+ * the stack does not depend on the length of the list.
+ * @param element Analysis of an element
+ * @param first   Types of the tokens that begin an element
+ */
+public void list(Runnable element, Token.Type... first)
+{
+    for(;;)
+    {
+        Token.Type t = tokenType();
+        boolean found = false;
+
+        for(Token.Type f : first)
+            found |= f == t;
+
+        if(!found)
+            return;
+
+        element.run();
+    }
+}
+
+/**
+ * Analyse an expression and generate its code.
+ * <p>The code is the same as the one generated by these recursive
+ * productions, but the analysis uses an explicit stack, so very long
+ * or nested expressions do not overflow the stack of the thread.
+ * <pre>
+ * expr -&gt; and (OR and)*
+ * and  -&gt; not (AND not)*
+ * not  -&gt; NEG not | rel
+ * rel  -&gt; sum (REL sum)?
+ * sum  -&gt; SUM? mul (SUM mul)*
+ * mul  -&gt; unit (MUL unit)*
+ * unit -&gt; LPAR expr RPAR | ID | INTVAL | STRVAL
+ * </pre>
+ * The operators are generated after their operands, and a {@code -}
+ * at the beginning of {@code sum} negates the first {@code mul}.
+ */
+public void expression()
+{
+    Deque<Level> stack = new ArrayDeque<>();
+    Level level = new Level(LEVEL_OR, null, false, LEVEL_MAX);
+
+    for(;;)
+    {
+        // Operand: prefix operators, parenthesis or value.
+        Token.Type t = tokenType();
+
+        if(t == Token.Type.NEG && level.min <= LEVEL_NOT)
+        {
+            tokenRead(t);
+            stack.push(level);
+            level = new Level(LEVEL_NOT, "!", false, LEVEL_AND);
+            continue;
+        }
+        else if(t == Token.Type.SUM && level.min <= LEVEL_SUM)
+        {
+            String sign = tokenName();
+            tokenRead(t);
+            stack.push(level);
+            level = new Level(LEVEL_MUL, sign.equals("-") ? "-1" : null,
+                              false, LEVEL_MAX);
+            continue;
+        }
+        else if(t == Token.Type.LPAR)
+        {
+            tokenRead(t);
+            stack.push(level);
+            level = new Level(LEVEL_OR, null, true, LEVEL_MAX);
+            continue;
+        }
+
+        switch(t)
+        {
+            case ID:
+                tokenRead(t);
+                codeVariableExpression();
+                break;
+            case STRVAL:
+                tokenRead(t);
+                codeString();
+                break;
+            default:
+                tokenRead(Token.Type.INTVAL);
+                codeInteger();
+        }
+
+        // Binary operators, or the end of the levels.
+        for(;;)
+        {
+            t = tokenType();
+            int p = level(t);
+
+            if(p >= level.min && p <= level.max)
+            {
+                String operator = tokenName();
+                tokenRead(t);
+                stack.push(level);
+                level = new Level(p + 1, operator, false,
+                                  p == LEVEL_REL ? LEVEL_NOT : p);
+                break;
+            }
+
+            if(level.parenthesis)
+                tokenRead(Token.Type.RPAR);
+
+            if(level.operator != null)
+                codeOperator(level.operator);
+
+            if(stack.isEmpty())
+                return;
+
+            int max = level.parentMax;
+            level = stack.pop();
+            level.max = Math.min(level.max, max);
+        }
+    }
+}
+
+// Precedence level of a binary operator, or 0.
+private static int level(Token.Type t)
+{
+    switch(t)
+    {
+        case OR:  return LEVEL_OR;
+        case AND: return LEVEL_AND;
+        case REL: return LEVEL_REL;
+        case SUM: return LEVEL_SUM;
+        case MUL: return LEVEL_MUL;
+        default:  return 0;
+    }
 }
 
 /**
@@ -91,7 +334,7 @@ public String tokenName()
  */
 public void codeVariableInteger()
 {
-    m_code.addVariableInteger(m_previous);
+    m_code.addVariableInteger(previous());
 }
 
 /**
@@ -99,7 +342,7 @@ public void codeVariableInteger()
  */
 public void codeVariableString()
 {
-    m_code.addVariableString(m_previous);
+    m_code.addVariableString(previous());
 }
 
 /**
@@ -108,7 +351,7 @@ public void codeVariableString()
  */
 public void codeVariableAssignment()
 {
-    m_code.addVariableAssignment(m_previous);
+    m_code.addVariableAssignment(previous());
 }
 
 /**
@@ -116,7 +359,7 @@ public void codeVariableAssignment()
  */
 public void codeVariableExpression()
 {
-    m_code.addVariableExpression(m_previous);
+    m_code.addVariableExpression(previous());
 }
 
 /**
@@ -124,7 +367,7 @@ public void codeVariableExpression()
  */
 public void codeAssignment()
 {
-    m_code.addAssignment(m_previous);
+    m_code.addAssignment(previous());
 }
 
 /**
@@ -132,7 +375,7 @@ public void codeAssignment()
  */
 public void codePrint()
 {
-    m_code.addPrint(m_previous);
+    m_code.addPrint(previous());
 }
 
 /**
@@ -140,7 +383,7 @@ public void codePrint()
  */
 public void codeIf()
 {
-    m_code.addIf(m_previous);
+    m_code.addIf(previous());
 }
 
 /**
@@ -148,7 +391,7 @@ public void codeIf()
  */
 public void codeElse()
 {
-    m_code.addElse(m_previous);
+    m_code.addElse(previous());
 }
 
 /**
@@ -157,7 +400,7 @@ public void codeElse()
  */
 public void codeEnd()
 {
-    m_code.addEnd(m_previous);
+    m_code.addEnd(previous());
 }
 
 /**
@@ -165,7 +408,7 @@ public void codeEnd()
  */
 public void codeWhile()
 {
-    m_code.addWhile(m_previous);
+    m_code.addWhile(previous());
 }
 
 /**
@@ -196,7 +439,7 @@ public void codeOperator(String operator)
  */
 public void codeInteger()
 {
-    m_code.addInteger(m_previous);
+    m_code.addInteger(previous());
 }
 
 /**
@@ -204,7 +447,7 @@ public void codeInteger()
  */
 public void codeString()
 {
-    m_code.addString(m_previous);
+    m_code.addString(previous());
 }
 
 /**
@@ -216,6 +459,27 @@ public String codeGet()
     return m_code.toString();
 }
 
+/**
+ * Compile the generated code.
+ * The program can be executed many times, even by several threads
+ * at the same time, without compiling it again.
+ * @return compiled program
+ */
+public Program codeProgram()
+{
+    return m_code.program();
+}
+
+/**
+ * Indicate whether the compiled program will be optimized.
+ * By default, it is optimized.
+ * @param optimize {@code false} to compile without optimizations
+ */
+public void codeOptimize(boolean optimize)
+{
+    m_code.optimize(optimize);
+}
+
 /**
  * Execute the generated code.
  */
@@ -0,0 +1,900 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.util.*;
+
+/**
+ * Abstract syntax tree built from the calls of {@code ASyn}.
+ * <p>It is an alternative to {@code Code} that keeps the structure of
+ * the program, so it can be analysed or transformed with a
+ * {@link Visitor}, and then lowered to {@code Code} to be executed.
+ * <p>The variables are resolved while the tree is built, and the
+ * errors are the same as those of {@code Code}.
+ */
+public class Ast implements Backend
+{
+/** Types of the values. */
+public static enum Type
+{
+    /** Integer value. */
+    INTEGER,
+    /** Character string. */
+    STRING,
+    /** Result of a condition. */
+    BOOLEAN
+}
+
+/**
+ * Operations of each kind of node.
+ * @param <R> Type of the result of the visit
+ */
+public interface Visitor<R>
+{
+    /**
+     * Visit a declaration.
+     * @param d Declaration
+     * @return result of the visit
+     */
+    R visitDeclaration(Declaration d);
+
+    /**
+     * Visit an assignment.
+     * @param a Assignment
+     * @return result of the visit
+     */
+    R visitAssignment(Assignment a);
+
+    /**
+     * Visit a print statement.
+     * @param p Print statement
+     * @return result of the visit
+     */
+    R visitPrint(Print p);
+
+    /**
+     * Visit an 'if' statement.
+     * @param i 'if' statement
+     * @return result of the visit
+     */
+    R visitIf(If i);
+
+    /**
+     * Visit a 'while' loop.
+     * @param w 'while' loop
+     * @return result of the visit
+     */
+    R visitWhile(While w);
+
+    /**
+     * Visit a variable used in an expression.
+     * @param v Variable
+     * @return result of the visit
+     */
+    R visitVariable(Variable v);
+
+    /**
+     * Visit a constant value.
+     * @param c Constant
+     * @return result of the visit
+     */
+    R visitConstant(Constant c);
+
+    /**
+     * Visit an operator with one operand.
+     * @param u Operator
+     * @return result of the visit
+     */
+    R visitUnary(Unary u);
+
+    /**
+     * Visit an operator with two operands.
+     * @param b Operator
+     * @return result of the visit
+     */
+    R visitBinary(Binary b);
+} // Visitor
+
+/** Node of the tree. */
+public abstract static class Node
+{
+    /** Last token read when the node was generated,
+     *  or {@code null} for the operators. */
+    public final Token token;
+
+    private Node(Token token)
+    {
+        this.token = token;
+    }
+
+    /**
+     * Call the method of a visitor for this kind of node.
+     * @param <R> Type of the result of the visit
+     * @param visitor Visitor
+     * @return result of the visit
+     */
+    public abstract <R> R accept(Visitor<R> visitor);
+} // Node
+
+/** Statement of a block. */
+public abstract static class Statement extends Node
+{
+    private Statement(Token token)
+    {
+        super(token);
+    }
+} // Statement
+
+/** Expression with the type of its value. */
+public abstract static class Expression extends Node
+{
+    /** Type of the value, if the expression has no type errors. */
+    public final Type type;
+
+    private Expression(Token token, Type type)
+    {
+        super(token);
+        this.type = type;
+    }
+} // Expression
+
+/** Declaration of a variable. */
+public static class Declaration extends Statement
+{
+    /** Type of the variable. */
+    public final Type type;
+
+    private Declaration(Token token, Type type)
+    {
+        super(token);
+        this.type = type;
+    }
+
+    /**
+     * Get the name of the variable.
+     * @return name of the variable
+     */
+    public String name()
+    {
+        return token.name;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitDeclaration(this);
+    }
+} // Declaration
+
+/** Assignment of a value to a variable. */
+public static class Assignment extends Statement
+{
+    /** Name of the destination variable. */
+    public final Token target;
+    /** Declaration of the destination variable. */
+    public final Declaration variable;
+    /** Assigned value. */
+    public final Expression value;
+
+    private Assignment(Token token, Token target,
+                       Declaration variable, Expression value)
+    {
+        super(token);
+        this.target   = target;
+        this.variable = variable;
+        this.value    = value;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitAssignment(this);
+    }
+} // Assignment
+
+/** Statement to print a value. */
+public static class Print extends Statement
+{
+    /** Printed value. */
+    public final Expression value;
+
+    private Print(Token token, Expression value)
+    {
+        super(token);
+        this.value = value;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitPrint(this);
+    }
+} // Print
+
+/** Statement 'if', whose token is the last token of the condition. */
+public static class If extends Statement
+{
+    /** Condition. */
+    public final Expression condition;
+    /** Statements executed if the condition is true. */
+    public final List<Statement> then;
+    /** Statements executed if the condition is false,
+     *  or {@code null} if there is no 'else'. */
+    public final List<Statement> otherwise;
+    /** Last token read at the 'else', or {@code null}. */
+    public final Token elseToken;
+    /** Last token read at the end. */
+    public final Token endToken;
+
+    private If(Token token, Expression condition, List<Statement> then,
+               Token elseToken, List<Statement> otherwise, Token endToken)
+    {
+        super(token);
+        this.condition = condition;
+        this.then      = then;
+        this.elseToken = elseToken;
+        this.otherwise = otherwise;
+        this.endToken  = endToken;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitIf(this);
+    }
+} // If
+
+/** Loop 'while', whose token is the token read at its beginning. */
+public static class While extends Statement
+{
+    /** Condition. */
+    public final Expression condition;
+    /** Last token of the condition. */
+    public final Token conditionToken;
+    /** Statements executed while the condition is true. */
+    public final List<Statement> body;
+    /** Last token read at the end. */
+    public final Token endToken;
+
+    private While(Token token, Expression condition, Token conditionToken,
+                  List<Statement> body, Token endToken)
+    {
+        super(token);
+        this.condition      = condition;
+        this.conditionToken = conditionToken;
+        this.body           = body;
+        this.endToken       = endToken;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitWhile(this);
+    }
+} // While
+
+/** Variable used in an expression. */
+public static class Variable extends Expression
+{
+    /** Declaration of the variable. */
+    public final Declaration declaration;
+
+    private Variable(Token token, Declaration declaration)
+    {
+        super(token, declaration.type);
+        this.declaration = declaration;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitVariable(this);
+    }
+} // Variable
+
+/** Constant value. */
+public static class Constant extends Expression
+{
+    /** Value: {@code Long} or {@code String}. */
+    public final Object value;
+
+    private Constant(Token token, Type type, Object value)
+    {
+        super(token, type);
+        this.value = value;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitConstant(this);
+    }
+} // Constant
+
+/** Operator with one operand: {@code -1} or {@code !}. */
+public static class Unary extends Expression
+{
+    /** Name of the operator. */
+    public final String operator;
+    /** Operand. */
+    public final Expression operand;
+
+    private Unary(String operator, Expression operand)
+    {
+        super(null, operator.equals("!") ? Type.BOOLEAN : Type.INTEGER);
+        this.operator = operator;
+        this.operand  = operand;
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitUnary(this);
+    }
+} // Unary
+
+/** Operator with two operands. */
+public static class Binary extends Expression
+{
+    /** Name of the operator. */
+    public final String operator;
+    /** Left operand. */
+    public final Expression left;
+    /** Right operand. */
+    public final Expression right;
+
+    private Binary(String operator, Expression left, Expression right)
+    {
+        super(null, type(operator, left, right));
+        this.operator = operator;
+        this.left     = left;
+        this.right    = right;
+    }
+
+    private static Type type(String operator, Expression l, Expression r)
+    {
+        switch(operator)
+        {
+            case "+":
+                return l.type == Type.STRING || r.type == Type.STRING ?
+                       Type.STRING : Type.INTEGER;
+            case "-":
+            case "*":
+            case "/":
+                return Type.INTEGER;
+            default:
+                return Type.BOOLEAN;
+        }
+    }
+
+    @Override public <R> R accept(Visitor<R> visitor)
+    {
+        return visitor.visitBinary(this);
+    }
+} // Binary
+
+// 'if' or 'while' whose end has not been generated.
+private static class Open
+{
+    private final Token token;
+    private final boolean loop;
+    private Expression condition;
+    private Token conditionToken, elseToken;
+    private List<Statement> then, otherwise, block;
+
+    private Open(Token token, boolean loop)
+    {
+        this.token = token;
+        this.loop  = loop;
+    }
+} // Open
+
+private final List<Statement> m_statements = new ArrayList<>();
+private final Map<String,Declaration> m_variables = new HashMap<>();
+private final LinkedList<Expression> m_expressions = new LinkedList<>();
+private final LinkedList<Open> m_open = new LinkedList<>();
+private Token m_target;
+private boolean m_optimize = true;
+
+/**
+ * Get the statements of the program.
+ * @return statements of the program
+ */
+public List<Statement> statements()
+{
+    return Collections.unmodifiableList(m_statements);
+}
+
+private void add(Statement s)
+{
+    if(m_open.isEmpty())
+    {
+        m_statements.add(s);
+    }
+    else
+    {
+        List<Statement> block = m_open.getFirst().block;
+
+        if(block == null)
+            throw new RuntimeException("Empty stack");
+
+        block.add(s);
+    }
+}
+
+private Expression pop()
+{
+    if(m_expressions.isEmpty())
+        throw new RuntimeException("Empty stack");
+
+    return m_expressions.removeFirst();
+}
+
+private Declaration variable(Token token)
+{
+    Declaration d = m_variables.get(token.name);
+
+    if(d == null)
+        throw new RuntimeException("There is no variable: "+ token.name);
+
+    return d;
+}
+
+private void addVariable(Token token, Type type)
+{
+    if(m_variables.containsKey(token.name))
+    {
+        throw new RuntimeException(
+            "Error ("+ token.row() +":"+ token.column() +
+            "): The variable already exists "+ token.name);
+    }
+
+    Declaration d = new Declaration(token, type);
+    m_variables.put(token.name, d);
+    add(d);
+}
+
+@Override public void addVariableInteger(Token token)
+{
+    addVariable(token, Type.INTEGER);
+}
+
+@Override public void addVariableString(Token token)
+{
+    addVariable(token, Type.STRING);
+}
+
+@Override public void addVariableAssignment(Token token)
+{
+    variable(token);
+    m_target = token;
+}
+
+@Override public void addVariableExpression(Token token)
+{
+    m_expressions.addFirst(new Variable(token, variable(token)));
+}
+
+@Override public void addAssignment(Token token)
+{
+    if(m_target == null)
+        throw new RuntimeException("Empty stack");
+
+    add(new Assignment(token, m_target, variable(m_target), pop()));
+    m_target = null;
+}
+
+@Override public void addPrint(Token token)
+{
+    add(new Print(token, pop()));
+}
+
+@Override public void addIf(Token token)
+{
+    Expression condition = pop();
+    Open open = m_open.peekFirst();
+
+    if(open == null || !open.loop || open.condition != null)
+    {
+        open = new Open(token, false);
+        open.then = new ArrayList<>();
+        open.block = open.then;
+        m_open.addFirst(open);
+    }
+    else
+    {
+        open.conditionToken = token;
+        open.block = new ArrayList<>();
+    }
+
+    open.condition = condition;
+}
+
+@Override public void addElse(Token token)
+{
+    Open open = m_open.peekFirst();
+
+    if(open == null || open.loop || open.otherwise != null)
+        throw new RuntimeException("Empty stack");
+
+    open.elseToken = token;
+    open.otherwise = new ArrayList<>();
+    open.block = open.otherwise;
+}
+
+@Override public void addWhile(Token token)
+{
+    m_open.addFirst(new Open(token, true));
+}
+
+@Override public void addEnd(Token token)
+{
+    if(m_open.isEmpty() || m_open.getFirst().condition == null)
+        throw new RuntimeException("Empty stack");
+
+    Open o = m_open.removeFirst();
+
+    if(o.loop)
+    {
+        add(new While(o.token, o.condition, o.conditionToken,
+                      Collections.unmodifiableList(o.block), token));
+    }
+    else
+    {
+        add(new If(o.token, o.condition,
+                   Collections.unmodifiableList(o.then), o.elseToken,
+                   o.otherwise == null ? null :
+                   Collections.unmodifiableList(o.otherwise), token));
+    }
+}
+
+@Override public void addInteger(Token token)
+{
+    Object value = Long.parseLong(token.name);
+    m_expressions.addFirst(new Constant(token, Type.INTEGER, value));
+}
+
+@Override public void addString(Token token)
+{
+    m_expressions.addFirst(new Constant(token, Type.STRING, token.name));
+}
+
+@Override public void addOperator(String operator)
+{
+    switch(operator)
+    {
+        case "-1":
+        case "!":
+            m_expressions.addFirst(new Unary(operator, pop()));
+            break;
+
+        case "+":  case "-":  case "*":  case "/":
+        case "==": case "!=": case "<":  case "<=":
+        case ">":  case ">=": case "||": case "&&":
+            Expression right = pop(),
+                       left  = pop();
+
+            m_expressions.addFirst(new Binary(operator, left, right));
+            break;
+
+        default:
+            throw new AssertionError();
+    }
+}
+
+/**
+ * Generate the code of the program.
+ * The calls to the code are the same as the calls received from
+ * {@code ASyn}, so the code is the same as if it had been generated
+ * directly.
+ * @return code of the program
+ */
+public Code lower()
+{
+    Code code = new Code();
+    code.optimize(m_optimize);
+    Lowering lowering = new Lowering(code);
+
+    for(Statement s : m_statements)
+        s.accept(lowering);
+
+    return code;
+}
+
+/**
+ * Indicate whether the lowered code will be optimized when it is
+ * compiled. By default, it is optimized.
+ * @param optimize {@code false} to compile without optimizations
+ */
+@Override public void optimize(boolean optimize)
+{
+    m_optimize = optimize;
+}
+
+/**
+ * Lower the program to code and compile it.
+ * @return compiled program
+ */
+@Override public Program program()
+{
+    return lower().program();
+}
+
+/**
+ * Lower the program to code and execute it.
+ */
+@Override public void run()
+{
+    lower().run();
+}
+
+/**
+ * Get a listing of the tree, with the expressions in infix notation.
+ * @return listing of the tree
+ */
+@Override public String toString()
+{
+    Printer printer = new Printer();
+
+    for(Statement s : m_statements)
+        s.accept(printer);
+
+    return printer.m_text.toString();
+}
+
+// Generation of code from the tree.
+private static class Lowering implements Visitor<Void>
+{
+    private final Code m_code;
+
+    private Lowering(Code code)
+    {
+        m_code = code;
+    }
+
+    private void block(List<Statement> block)
+    {
+        for(Statement s : block)
+            s.accept(this);
+    }
+
+    @Override public Void visitDeclaration(Declaration d)
+    {
+        if(d.type == Type.INTEGER)
+            m_code.addVariableInteger(d.token);
+        else
+            m_code.addVariableString(d.token);
+
+        return null;
+    }
+
+    @Override public Void visitAssignment(Assignment a)
+    {
+        m_code.addVariableAssignment(a.target);
+        expression(a.value);
+        m_code.addAssignment(a.token);
+        return null;
+    }
+
+    @Override public Void visitPrint(Print p)
+    {
+        expression(p.value);
+        m_code.addPrint(p.token);
+        return null;
+    }
+
+    @Override public Void visitIf(If i)
+    {
+        expression(i.condition);
+        m_code.addIf(i.token);
+        block(i.then);
+
+        if(i.otherwise != null)
+        {
+            m_code.addElse(i.elseToken);
+            block(i.otherwise);
+        }
+
+        m_code.addEnd(i.endToken);
+        return null;
+    }
+
+    @Override public Void visitWhile(While w)
+    {
+        m_code.addWhile(w.token);
+        expression(w.condition);
+        m_code.addIf(w.conditionToken);
+        block(w.body);
+        m_code.addEnd(w.endToken);
+        return null;
+    }
+
+    @Override public Void visitVariable(Variable v)
+    {
+        m_code.addVariableExpression(v.token);
+        return null;
+    }
+
+    @Override public Void visitConstant(Constant c)
+    {
+        if(c.type == Type.INTEGER)
+            m_code.addInteger(c.token);
+        else
+            m_code.addString(c.token);
+
+        return null;
+    }
+
+    @Override public Void visitUnary(Unary u)
+    {
+        expression(u);
+        return null;
+    }
+
+    @Override public Void visitBinary(Binary b)
+    {
+        expression(b);
+        return null;
+    }
+
+    // Generate the operands before their operators with an explicit
+    // stack, so long expressions do not overflow the stack of the
+    // thread. The stack keeps the expressions not generated yet and
+    // the operators waiting for their operands.
+    private void expression(Expression e)
+    {
+        LinkedList<Object> stack = new LinkedList<>();
+        stack.push(e);
+
+        while(!stack.isEmpty())
+        {
+            Object o = stack.pop();
+
+            if(o instanceof String)
+            {
+                m_code.addOperator((String)o);
+            }
+            else if(o instanceof Unary)
+            {
+                Unary u = (Unary)o;
+                stack.push(u.operator);
+                stack.push(u.operand);
+            }
+            else if(o instanceof Binary)
+            {
+                Binary b = (Binary)o;
+                stack.push(b.operator);
+                stack.push(b.right);
+                stack.push(b.left);
+            }
+            else
+            {
+                ((Expression)o).accept(this);
+            }
+        }
+    }
+} // Lowering
+
+// Listing of the tree: the statements are added to the text
+// and the expressions are returned.
+private static class Printer implements Visitor<String>
+{
+    private final StringBuilder m_text = new StringBuilder();
+    private int m_indent;
+
+    private void line(String s)
+    {
+        for(int i = 0; i < m_indent; i++)
+            m_text.append("    ");
+
+        m_text.append(s).append("\n");
+    }
+
+    private void block(List<Statement> block)
+    {
+        m_indent++;
+
+        for(Statement s : block)
+            s.accept(this);
+
+        m_indent--;
+    }
+
+    @Override public String visitDeclaration(Declaration d)
+    {
+        line((d.type == Type.INTEGER ? "integer " : "string ") + d.name());
+        return null;
+    }
+
+    @Override public String visitAssignment(Assignment a)
+    {
+        line(a.target.name +" = "+ expression(a.value));
+        return null;
+    }
+
+    @Override public String visitPrint(Print p)
+    {
+        line("print "+ expression(p.value));
+        return null;
+    }
+
+    @Override public String visitIf(If i)
+    {
+        line("if "+ expression(i.condition));
+        block(i.then);
+
+        if(i.otherwise != null)
+        {
+            line("else");
+            block(i.otherwise);
+        }
+
+        line("end");
+        return null;
+    }
+
+    @Override public String visitWhile(While w)
+    {
+        line("while "+ expression(w.condition));
+        block(w.body);
+        line("end");
+        return null;
+    }
+
+    @Override public String visitVariable(Variable v)
+    {
+        return v.token.name;
+    }
+
+    @Override public String visitConstant(Constant c)
+    {
+        return c.type == Type.STRING ? "\""+ c.value +"\"" : ""+ c.value;
+    }
+
+    @Override public String visitUnary(Unary u)
+    {
+        return expression(u);
+    }
+
+    @Override public String visitBinary(Binary b)
+    {
+        return expression(b);
+    }
+
+    // Text of an expression, written from left to right with an
+    // explicit stack instead of recursion. The stack keeps the
+    // expressions and the pieces of text not written yet.
+    private String expression(Expression e)
+    {
+        StringBuilder text = new StringBuilder();
+        LinkedList<Object> stack = new LinkedList<>();
+        stack.push(e);
+
+        while(!stack.isEmpty())
+        {
+            Object o = stack.pop();
+
+            if(o instanceof String)
+            {
+                text.append((String)o);
+            }
+            else if(o instanceof Unary)
+            {
+                Unary u = (Unary)o;
+                stack.push(u.operand);
+                stack.push(u.operator.equals("!") ? "!" : "-");
+            }
+            else if(o instanceof Binary)
+            {
+                Binary b = (Binary)o;
+                stack.push(")");
+                stack.push(b.right);
+                stack.push(" "+ b.operator +" ");
+                stack.push(b.left);
+                stack.push("(");
+            }
+            else
+            {
+                text.append(((Expression)o).accept(this));
+            }
+        }
+
+        return text.toString();
+    }
+} // Printer
+
+} // Ast
@@ -0,0 +1,115 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+/**
+ * Destination of the code generated by {@code ASyn}.
+ * <p>The methods are called in the order of the postfix notation:
+ * the operands of an expression before its operator, and the
+ * condition of an {@code if} or {@code while} before {@link #addIf}.
+ * The token of each call is the last token read by the analyser,
+ * and it is used to locate the errors.
+ * @see Code
+ * @see Ast
+ */
+public interface Backend
+{
+/**
+ * Declare an integer variable.
+ * @param token Name of the variable
+ */
+void addVariableInteger(Token token);
+
+/**
+ * Declare a string variable.
+ * @param token Name of the variable
+ */
+void addVariableString(Token token);
+
+/**
+ * Use a variable as the destination of an assignment.
+ * @param token Name of the variable
+ */
+void addVariableAssignment(Token token);
+
+/**
+ * Use a variable in an expression.
+ * @param token Name of the variable
+ */
+void addVariableExpression(Token token);
+
+/**
+ * Assign the last expression to the last destination variable.
+ * @param token Last token read
+ */
+void addAssignment(Token token);
+
+/**
+ * Print the last expression.
+ * @param token Last token read
+ */
+void addPrint(Token token);
+
+/**
+ * Begin the block executed when the last expression is true.
+ * @param token Last token read
+ */
+void addIf(Token token);
+
+/**
+ * Begin the block executed when the condition of the 'if' is false.
+ * @param token Last token read
+ */
+void addElse(Token token);
+
+/**
+ * Begin a 'while' loop, before its condition.
+ * @param token Last token read
+ */
+void addWhile(Token token);
+
+/**
+ * End the last 'if' statement or 'while' loop.
+ * @param token Last token read
+ */
+void addEnd(Token token);
+
+/**
+ * Use an integer value in an expression.
+ * @param token Value
+ */
+void addInteger(Token token);
+
+/**
+ * Use a string value in an expression.
+ * @param token Value
+ */
+void addString(Token token);
+
+/**
+ * Apply an operator to the last expressions.
+ * @param operator Name of the operator, as in {@link ASyn#codeOperator}
+ */
+void addOperator(String operator);
+
+/**
+ * Indicate whether the compiled program will be optimized.
+ * By default, it is optimized.
+ * @param optimize {@code false} to compile without optimizations
+ */
+void optimize(boolean optimize);
+
+/**
+ * Compile the generated code.
+ * @return compiled program
+ */
+Program program();
+
+/**
+ * Execute the generated code.
+ */
+void run();
+
+} // Backend
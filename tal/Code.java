@@ -5,11 +5,13 @@
 package tal;
 
 import java.util.*;
+import tal.Program.Instruction;
+import tal.Program.Op;
 
 /**
  * This class is used in {@code ASyn} for code generation.
  */
-public class Code
+public class Code implements Backend
 {
 private static enum TValue
 {
@@ -26,52 +28,52 @@ private static enum Action
 
 private static class Variable
 {
+    // Index in the integers or the strings of the frame.
+    private int slot;
     private String name;
     private TValue type;
-    private Object value;
 }
 
 private static class Statement
 {
-    private int line, row, column;
+    private int line;
+    private Token token;
     private Action action;
     private TValue type;
     private Object value;
     private Statement next;
-}
-
-private static class Node
-{
-    private TValue type;
-    private Object value;
-}
 
-private interface RunStatement
-{
-    Statement run(Statement c);
+    // Compiled operation, or null if it does not generate code.
+    private Op op;
+    private int operand;
 }
 
-private final RunStatement
-    m_run[] = new RunStatement[Action.values().length];
-
 // Compilation data.
 private Token m_token;
-
-// Compilation and execution data.
 private final Map<String,Variable> m_variables = new HashMap<>();
+private int m_integerSlots, m_stringSlots;
 private Statement m_first, m_last;
 
+// Variables by the number of the identifier in the symbol table.
+private Variable m_ids[] = new Variable[64];
+
 // Stack to implement the jumps in conditions and loops.
 private final LinkedList<Statement> m_control = new LinkedList<>();
 
-// Execution stack.
-private final LinkedList<Node> m_pila = new LinkedList<>();
+// Types of the values of the expressions, to check them when the code
+// is generated, and destination variables of the assignments.
+private final LinkedList<TValue> m_tiposPila = new LinkedList<>();
+private final LinkedList<Variable> m_destinos = new LinkedList<>();
+
+// Compiled code, until more statements are added.
+private Program m_program;
+private boolean m_optimize = true;
 
 private void add(Statement nodo)
 {
+    m_program = null;
     nodo.line   = m_last==null ? 0 : m_last.line + 1;
-    nodo.row    = m_token.row;
-    nodo.column = m_token.column;
+    nodo.token  = m_token;
 
     if(m_first == null)
     {
@@ -89,59 +91,146 @@ private void add(Statement nodo)
 private void error(String mensaje)
 {
     throw new RuntimeException(
-        "Error ("+ m_token.row +":"+ m_token.column +
+        "Error ("+ m_token.row() +":"+ m_token.column() +
         "): "+ mensaje +" "+ m_token.name);
 }
 
 private Statement newCodigo(Action accion, TValue tipo, Object valor)
 {
     Statement c = new Statement();
-    c.row    = m_token.row;
-    c.column = m_token.column;
+    c.token   = m_token;
     c.action  = accion;
     c.type    = tipo;
     c.value   = valor;
     return c;
 }
 
+private Statement newCodigo(Action accion, TValue tipo, Object valor,
+                            Op op, int operand)
+{
+    Statement c = newCodigo(accion, tipo, valor);
+    c.op      = op;
+    c.operand = operand;
+    return c;
+}
+
+// Type of an operand of CONCAT.
+private static int concat(TValue tipo)
+{
+    switch(tipo)
+    {
+        case INTEGER: return Program.CONCAT_INTEGER;
+        case BOOLEAN: return Program.CONCAT_BOOLEAN;
+        default:      return Program.CONCAT_STRING;
+    }
+}
+
+private void incompatibleTypes()
+{
+    throw new RuntimeException(
+        "Incompatible types in "+ m_token.row() +"."+ m_token.column());
+}
+
+private void pushTipo(TValue tipo)
+{
+    m_tiposPila.addFirst(tipo);
+}
+
+private TValue popTipo()
+{
+    if(m_tiposPila.isEmpty())
+        throw new RuntimeException("Empty stack");
+
+    return m_tiposPila.removeFirst();
+}
+
+// Check the type of the value on the top of the stack.
+private void popTipo(TValue tipo)
+{
+    if(popTipo() != tipo)
+        incompatibleTypes();
+}
+
+private Variable getVariable(Token token)
+{
+    if(token.id < 0)
+        return m_variables.get(token.name);
+    else if(token.id < m_ids.length)
+        return m_ids[token.id];
+    else
+        return null;
+}
+
 private void addVariable(TValue tipo)
 {
     String nombre = m_token.name;
 
-    if(m_variables.containsKey(nombre))
+    if(getVariable(m_token) != null)
         error("The variable already exists");
 
     Variable v = new Variable();
+    v.slot   = tipo == TValue.STRING ? m_stringSlots++ : m_integerSlots++;
     v.name   = nombre;
-    v.type     = tipo;
-    v.value    = tipo == TValue.STRING ? "" : 0;
+    v.type   = tipo;
     m_variables.put(nombre, v);
 
-    add(newCodigo(Action.DECLARE, tipo, v));
+    if(m_token.id >= 0)
+    {
+        if(m_token.id >= m_ids.length)
+        {
+            m_ids = Arrays.copyOf(m_ids,
+                        Math.max(m_ids.length * 2, m_token.id + 1));
+        }
+
+        m_ids[m_token.id] = v;
+    }
+
+    add(newCodigo(Action.DECLARE, tipo, v, Op.NOP, 0));
 }
 
-public void addVariableInteger(Token token)
+@Override public void addVariableInteger(Token token)
 {
     m_token = token;
     addVariable(TValue.INTEGER);
 }
 
-public void addVariableString(Token token)
+@Override public void addVariableString(Token token)
 {
     m_token = token;
     addVariable(TValue.STRING);
 }
 
-public void addAssignment(Token token)
+@Override public void addAssignment(Token token)
 {
     m_token = token;
-    add(newCodigo(Action.ASSIGN, TValue.VOID, null));
+    TValue valor = popTipo();
+
+    if(popTipo() != TValue.VOID)
+        throw new RuntimeException("It is not an assignment variable");
+
+    Variable v = m_destinos.removeFirst();
+
+    if(valor != v.type)
+        incompatibleTypes();
+
+    Op op = v.type == TValue.STRING ? Op.STORE_STRING : Op.STORE_INTEGER;
+    add(newCodigo(Action.ASSIGN, TValue.VOID, null, op, v.slot));
 }
 
-public void addPrint(Token token)
+@Override public void addPrint(Token token)
 {
     m_token = token;
-    add(newCodigo(Action.PRINT, TValue.VOID, null));
+    Op op;
+
+    switch(popTipo())
+    {
+        case INTEGER: op = Op.PRINT_INTEGER; break;
+        case BOOLEAN: op = Op.PRINT_BOOLEAN; break;
+        case STRING:  op = Op.PRINT_STRING;  break;
+        default:      incompatibleTypes(); return;
+    }
+
+    add(newCodigo(Action.PRINT, TValue.VOID, null, op, 0));
 }
 
 private void pushCtrl(Statement n)
@@ -157,36 +246,39 @@ private Statement popCtrl()
     return m_control.removeFirst();
 }
 
-public void addIf(Token token)
+@Override public void addIf(Token token)
 {
     m_token = token;
-    Statement c = newCodigo(Action.IF, TValue.VOID, null);
+    popTipo(TValue.BOOLEAN);
+    Statement c = newCodigo(Action.IF, TValue.VOID, null, Op.IF, 0);
     add(c);
     pushCtrl(c);
 }
 
-public void addElse(Token token)
+@Override public void addElse(Token token)
 {
     m_token = token;
-    Statement gotoEnd = newCodigo(Action.GOTO, TValue.VOID, null);
+    Statement gotoEnd = newCodigo(Action.GOTO, TValue.VOID, null,
+                                  Op.GOTO, 0);
     add(gotoEnd);
 
-    Statement nodoElse = newCodigo(Action.ELSE, TValue.VOID, null);
+    Statement nodoElse = newCodigo(Action.ELSE, TValue.VOID, null,
+                                   Op.NOP, 0);
     add(nodoElse);
 
     popCtrl().value = nodoElse;
     pushCtrl(gotoEnd);
 }
 
-public void addWhile(Token token)
+@Override public void addWhile(Token token)
 {
     m_token = token;
-    Statement c = newCodigo(Action.WHILE, TValue.VOID, null);
+    Statement c = newCodigo(Action.WHILE, TValue.VOID, null, Op.NOP, 0);
     add(c);
     pushCtrl(c);
 }
 
-public void addEnd(Token token)
+@Override public void addEnd(Token token)
 {
     m_token = token;
     Statement gotoInicio = null;
@@ -195,11 +287,12 @@ public void addEnd(Token token)
                     m_control.get(1).action == Action.WHILE;
     if(bucle)
     {
-        gotoInicio = newCodigo(Action.GOTO, TValue.VOID, null);
+        gotoInicio = newCodigo(Action.GOTO, TValue.VOID, null,
+                               Op.GOTO, 0);
         add(gotoInicio);
     }
 
-    Statement fin = newCodigo(Action.END, TValue.VOID, null);
+    Statement fin = newCodigo(Action.END, TValue.VOID, null, Op.NOP, 0);
     add(fin);
 
     // GOTO al final del bloque: cuando no se cumpla la condicion.
@@ -212,42 +305,50 @@ public void addEnd(Token token)
     }
 }
 
-public void addVariableAssignment(Token token)
+@Override public void addVariableAssignment(Token token)
 {
     m_token = token;
-    Variable v = m_variables.get(token.name);
+    Variable v = getVariable(token);
 
     if(v == null)
         throw new RuntimeException("There is no variable: "+ token.name);
 
+    // The variable is used by the assignment, without code.
+    pushTipo(TValue.VOID);
+    m_destinos.addFirst(v);
     add(newCodigo(Action.VARIABLE, TValue.VOID, v));
 }
 
-public void addVariableExpression(Token token)
+@Override public void addVariableExpression(Token token)
 {
     m_token = token;
-    Variable v = m_variables.get(token.name);
+    Variable v = getVariable(token);
 
     if(v == null)
         throw new RuntimeException("There is no variable: "+ token.name);
 
-    add(newCodigo(Action.VARIABLE, v.type, v));
+    pushTipo(v.type);
+    Op op = v.type == TValue.STRING ? Op.LOAD_STRING : Op.LOAD_INTEGER;
+    add(newCodigo(Action.VARIABLE, v.type, v, op, v.slot));
 }
 
-public void addInteger(Token token)
+@Override public void addInteger(Token token)
 {
     m_token = token;
     Object valor = Long.parseLong(token.name);
-    add(newCodigo(Action.CONSTANT, TValue.INTEGER, valor));
+    pushTipo(TValue.INTEGER);
+    add(newCodigo(Action.CONSTANT, TValue.INTEGER, valor, Op.INTEGER, 0));
 }
 
-public void addString(Token token)
+@Override public void addString(Token token)
 {
     m_token = token;
-    add(newCodigo(Action.CONSTANT, TValue.STRING, token.name));
+    pushTipo(TValue.STRING);
+    add(newCodigo(Action.CONSTANT, TValue.STRING, token.name,
+                  Op.STRING, 0));
 }
 
-public void addOperator(String operador)
+@Override public void addOperator(String operador)
 {
     Action sentencia;
 
@@ -270,7 +371,70 @@ public void addOperator(String operador)
         default: throw new AssertionError();
     }
 
-    add(newCodigo(sentencia, TValue.VOID, null));
+    Op op = null;
+    int operand = 0;
+
+    switch(sentencia)
+    {
+        case SUM:
+            TValue t2 = popTipo(),
+                   t1 = popTipo();
+
+            if(t1 == TValue.STRING || t2 == TValue.STRING)
+            {
+                if(t1 == TValue.VOID || t2 == TValue.VOID)
+                    incompatibleTypes();
+
+                // Types of the operands to convert them to strings.
+                op = Op.CONCAT;
+                operand = concat(t1) << 2 | concat(t2);
+                pushTipo(TValue.STRING);
+            }
+            else
+            {
+                if(t1 != TValue.INTEGER || t2 != TValue.INTEGER)
+                    incompatibleTypes();
+
+                op = Op.ADD;
+                pushTipo(TValue.INTEGER);
+            }
+            break;
+
+        case NEGATE:
+            popTipo(TValue.INTEGER);
+            pushTipo(TValue.INTEGER);
+            break;
+
+        case NOT:
+            popTipo(TValue.BOOLEAN);
+            pushTipo(TValue.BOOLEAN);
+            break;
+
+        case OR:
+        case AND:
+            popTipo(TValue.BOOLEAN);
+            popTipo(TValue.BOOLEAN);
+            pushTipo(TValue.BOOLEAN);
+            break;
+
+        case SUBTRACT:
+        case MULTIPLY:
+        case DIVIDE:
+            popTipo(TValue.INTEGER);
+            popTipo(TValue.INTEGER);
+            pushTipo(TValue.INTEGER);
+            break;
+
+        default:
+            popTipo(TValue.INTEGER);
+            popTipo(TValue.INTEGER);
+            pushTipo(TValue.BOOLEAN);
+    }
+
+    if(op == null)
+        op = Op.valueOf(sentencia.name());
+
+    add(newCodigo(sentencia, TValue.VOID, null, op, operand));
 }
 
 @Override public String toString()
@@ -338,284 +502,109 @@ public void addOperator(String operador)
     return s.toString();
 }
 
-private void stackPush(TValue tipo, Object valor)
+/**
+ * Indicate whether the compiled program will be optimized.
+ * By default, it is optimized.
+ * @param optimize {@code false} to compile without optimizations
+ */
+@Override public void optimize(boolean optimize)
 {
-    Node n  = new Node();
-    n.type  = tipo;
-    n.value = valor;
-    m_pila.addFirst(n);
+    m_optimize = optimize;
+    m_program  = null;
 }
 
-private Node pilaPop()
+/**
+ * Compile the code generated until now.
+ * The program can be executed many times, even by several threads
+ * at the same time.
+ * @return compiled program
+ */
+@Override public Program program()
 {
-    if(m_pila.isEmpty())
-        throw new RuntimeException("Empty stack");
+    if(m_program == null)
+        m_program = compile();
 
-    return m_pila.removeFirst();
+    return m_program;
 }
 
-private void checkTypes(Statement c, Node n1, TValue t2)
+private Program compile()
 {
-    if(n1.type != t2)
-    {
-        throw new RuntimeException(
-            "Incompatible types in "+ c.row +"."+ c.column);
-    }
-}
+    int count = m_last == null ? 0 : m_last.line + 1;
+    List<Instruction> code = new ArrayList<>();
 
-private Statement runNext(Statement c)
-{
-    return c.next;
-}
+    // Instruction of each statement, or of the following statement
+    // if it does not generate code.
+    Instruction at[] = new Instruction[count + 1];
 
-private Statement runAsign(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    if(n1.type != TValue.VOID)
-        throw new RuntimeException("It is not an assignment variable");
-
-    Variable v = (Variable)n1.value;
-    checkTypes(c, n2, v.type);
-    v.value = n2.value;
-    return c.next;
-}
+    // Index of the first instruction of each value of the stack.
+    LinkedList<Integer> inicios = new LinkedList<>();
 
-private Statement runPrint(Statement c)
-{
-    System.out.println(pilaPop().value);
-    return c.next;
-}
-
-private Statement runIf(Statement c)
-{
-    Node n = pilaPop();
-    checkTypes(c, n, TValue.BOOLEAN);
-    return (Boolean)n.value ? c.next : (Statement)c.value;
-}
+    for(Statement c = m_first; c != null; c = c.next)
+    {
+        if(c.op == null)
+            continue;
 
-private Statement runGoto(Statement c)
-{
-    return (Statement)c.value;
-}
+        Instruction i = new Instruction(c.op, c.operand, c.value, c.token);
 
-private Statement runVariable(Statement c)
-{
-    Variable v = (Variable)c.value;
+        for(int line = c.line; line >= 0 && at[line] == null; line--)
+            at[line] = i;
 
-    if(c.type == TValue.VOID)
-    {
-        // Variable de asignacion.
-        stackPush(c.type, c.value);
-    }
-    else
-    {
-        // Variable de expresion.
-        assert c.type == v.type;
-        stackPush(v.type, v.value);
-    }
+        int inicio = code.size(), segundo = inicio;
 
-    return c.next;
-}
+        for(int n = 0; n < c.op.pops; n++)
+        {
+            segundo = inicio;
+            inicio  = inicios.pop();
+        }
 
-private Statement runConstant(Statement c)
-{
-    stackPush(c.type, c.value);
-    return c.next;
-}
+        if(c.op == Op.AND || c.op == Op.OR)
+        {
+            // The second operand is evaluated only if the first one
+            // does not decide the result. The values of the stack
+            // begin before the first operand, so their indices
+            // do not change.
+            Instruction salto = new Instruction(
+                c.op == Op.AND ? Op.AND_THEN : Op.OR_ELSE, 0, null, c.token);
+
+            salto.target = i;
+            i.op = Op.NOP;
+            code.add(segundo, salto);
+        }
 
-private Statement runSum(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
+        for(int n = 0; n < c.op.pushes; n++)
+            inicios.push(inicio);
 
-    if(n1.type == TValue.STRING || n2.type == TValue.STRING)
-    {
-        stackPush(TValue.STRING, n1.value +""+ n2.value);
+        code.add(i);
     }
-    else
+
+    // Without 'end', the jumps go to the end of the code.
+    for(Instruction i : code)
     {
-        checkTypes(c, n1, TValue.INTEGER);
-        checkTypes(c, n2, TValue.INTEGER);
-        stackPush(TValue.INTEGER, (Long)n1.value + (Long)n2.value);
+        if(i.op == Op.IF || i.op == Op.GOTO)
+        {
+            Statement destino = (Statement)i.value;
+            i.target = destino == null ? null : at[destino.line];
+            i.value  = null;
+        }
     }
 
-    return c.next;
-}
-
-private Statement runSubtract(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.INTEGER, (Long)n1.value - (Long)n2.value);
-    return c.next;
-}
-
-private Statement runNegate(Statement c)
-{
-    Node n = pilaPop();
-    checkTypes(c, n, TValue.INTEGER);
-    stackPush(TValue.INTEGER, -(Long)n.value);
-    return c.next;
-}
-
-private Statement runMultiply(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.INTEGER, (Long)n1.value * (Long)n2.value);
-    return c.next;
-}
-
-private Statement runDivide(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.INTEGER, (Long)n1.value / (Long)n2.value);
-    return c.next;
-}
-
-private Statement runEqual(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.BOOLEAN, n1.value.equals(n2.value));
-    return c.next;
-}
-
-private Statement runUnequal(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.BOOLEAN, !n1.value.equals(n2.value));
-    return c.next;
-}
-
-private Statement runLess(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.BOOLEAN, (Long)n1.value < (Long)n2.value);
-    return c.next;
-}
-
-private Statement runLessEq(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.BOOLEAN, (Long)n1.value <= (Long)n2.value);
-    return c.next;
-}
-
-private Statement runGreater(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
+    if(!m_optimize)
+        return Program.assemble(code, m_integerSlots, m_stringSlots);
 
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.BOOLEAN, (Long)n1.value > (Long)n2.value);
-    return c.next;
+    Optimizer optimizer = new Optimizer(code, m_integerSlots, m_stringSlots);
+    optimizer.fold();
+    optimizer.peephole();
+    optimizer.loops();
+    optimizer.fuse();
+    return optimizer.program();
 }
 
-private Statement runGreaterEq(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.INTEGER);
-    checkTypes(c, n2, TValue.INTEGER);
-    stackPush(TValue.BOOLEAN, (Long)n1.value >= (Long)n2.value);
-    return c.next;
-}
-
-private Statement runNot(Statement c)
-{
-    Node n = pilaPop();
-    checkTypes(c, n, TValue.BOOLEAN);
-    stackPush(TValue.BOOLEAN, !(Boolean)n.value);
-    return c.next;
-}
-
-private Statement runOr(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.BOOLEAN);
-    checkTypes(c, n2, TValue.BOOLEAN);
-    stackPush(TValue.BOOLEAN, (Boolean)n1.value || (Boolean)n2.value);
-    return c.next;
-}
-
-private Statement runAnd(Statement c)
-{
-    Node n2 = pilaPop(),
-         n1 = pilaPop();
-
-    checkTypes(c, n1, TValue.BOOLEAN);
-    checkTypes(c, n2, TValue.BOOLEAN);
-    stackPush(TValue.BOOLEAN, (Boolean)n1.value && (Boolean)n2.value);
-    return c.next;
-}
-
-private void inicializarRun()
-{
-    m_run[Action.DECLARE  .ordinal()] = this::runNext;
-    m_run[Action.ASSIGN   .ordinal()] = this::runAsign;
-    m_run[Action.PRINT    .ordinal()] = this::runPrint;
-    m_run[Action.IF       .ordinal()] = this::runIf;
-    m_run[Action.ELSE     .ordinal()] = this::runNext;
-    m_run[Action.WHILE    .ordinal()] = this::runNext;
-    m_run[Action.GOTO     .ordinal()] = this::runGoto;
-    m_run[Action.END      .ordinal()] = this::runNext;
-    m_run[Action.VARIABLE .ordinal()] = this::runVariable;
-    m_run[Action.CONSTANT .ordinal()] = this::runConstant;
-    m_run[Action.SUM      .ordinal()] = this::runSum;
-    m_run[Action.SUBTRACT .ordinal()] = this::runSubtract;
-    m_run[Action.NEGATE   .ordinal()] = this::runNegate;
-    m_run[Action.MULTIPLY .ordinal()] = this::runMultiply;
-    m_run[Action.DIVIDE   .ordinal()] = this::runDivide;
-    m_run[Action.EQUAL    .ordinal()] = this::runEqual;
-    m_run[Action.UNEQUAL  .ordinal()] = this::runUnequal;
-    m_run[Action.LESS     .ordinal()] = this::runLess;
-    m_run[Action.LESSEQ   .ordinal()] = this::runLessEq;
-    m_run[Action.GREATER  .ordinal()] = this::runGreater;
-    m_run[Action.GREATEREQ.ordinal()] = this::runGreaterEq;
-    m_run[Action.NOT      .ordinal()] = this::runNot;
-    m_run[Action.OR       .ordinal()] = this::runOr;
-    m_run[Action.AND      .ordinal()] = this::runAnd;
-}
-
-public void run()
+/**
+ * Compile the code and execute it with a new context.
+ */
+@Override public void run()
 {
-    inicializarRun();
-    Statement c = m_first;
-
-    while(c != null)
-        c = m_run[c.action.ordinal()].run(c);
+    program().run();
 }
 
 } // Code
@@ -24,6 +24,16 @@ public DFA(String file) throws IOException
     setStart(this::s_start);
 }
 
+/**
+ * Build the automaton.
+ * @param source Text that must be analysed
+ */
+public DFA(Source source)
+{
+    super(source);
+    setStart(this::s_start);
+}
+
 private void s_start()
 {
     if(isDigitChar())
@@ -31,21 +31,27 @@ public void program()
     tokenRead(EOF);
 }
 
+// The list of declarations is read with a loop instead of recursion,
+// so the depth of the stack does not depend on its length.
 private void declaration()
 {
-    switch(tokenType())
+    for(;;)
     {
-        case INTEGER:
-            tokenRead(INTEGER);
-            tokenRead(ID);
-            declaration();
-            break;
-
-        case STRING:
-            tokenRead(STRING);
-            tokenRead(ID);
-            declaration();
-            break;
+        switch(tokenType())
+        {
+            case INTEGER:
+                tokenRead(INTEGER);
+                tokenRead(ID);
+                break;
+
+            case STRING:
+                tokenRead(STRING);
+                tokenRead(ID);
+                break;
+
+            default:
+                return;
+        }
     }
 }
 
@@ -0,0 +1,127 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+/**
+ * Text that can be edited in place.
+ * <p>The characters are kept in an array with a gap at the place of
+ * the last edit. An edit only moves the characters between the gap
+ * and the place of the edit, so a sequence of edits near each other,
+ * as when a user types, does not copy the whole text.
+ */
+class GapText implements CharSequence
+{
+private char[] m_chars;
+private int m_gap, m_gapEnd;
+
+/**
+ * Build a text with the characters of another one.
+ * @param text Initial characters
+ */
+GapText(CharSequence text)
+{
+    int length = text.length();
+    m_chars = new char[Math.max(16, length + length / 4)];
+
+    for(int i = 0; i < length; i++)
+        m_chars[i] = text.charAt(i);
+
+    m_gap = length;
+    m_gapEnd = m_chars.length;
+}
+
+/**
+ * Replace a range of characters.
+ * @param start Index of the first character to replace
+ * @param end   Index after the last character to replace
+ * @param text  Characters inserted in place of the range
+ */
+void replace(int start, int end, CharSequence text)
+{
+    if(start < 0 || start > end || end > length())
+        throw new IndexOutOfBoundsException(start +", "+ end);
+
+    moveGap(start);
+    m_gapEnd += end - start;
+
+    int length = text.length();
+
+    if(m_gapEnd - m_gap < length)
+        grow(length);
+
+    for(int i = 0; i < length; i++)
+        m_chars[m_gap++] = text.charAt(i);
+}
+
+// Move the gap to an index, moving the characters between them.
+private void moveGap(int index)
+{
+    if(index < m_gap)
+    {
+        int n = m_gap - index;
+        System.arraycopy(m_chars, index, m_chars, m_gapEnd - n, n);
+        m_gap = index;
+        m_gapEnd -= n;
+    }
+    else if(index > m_gap)
+    {
+        int n = index - m_gap;
+        System.arraycopy(m_chars, m_gapEnd, m_chars, m_gap, n);
+        m_gap = index;
+        m_gapEnd += n;
+    }
+}
+
+// Make the gap large enough to insert some characters.
+private void grow(int length)
+{
+    int after = m_chars.length - m_gapEnd,
+        capacity = Math.max(m_chars.length * 2, m_gap + length + after);
+
+    char[] chars = new char[capacity];
+    System.arraycopy(m_chars, 0, chars, 0, m_gap);
+    System.arraycopy(m_chars, m_gapEnd, chars, capacity - after, after);
+    m_chars = chars;
+    m_gapEnd = capacity - after;
+}
+
+@Override public int length()
+{
+    return m_chars.length - (m_gapEnd - m_gap);
+}
+
+@Override public char charAt(int index)
+{
+    if(index < 0 || index >= length())
+        throw new IndexOutOfBoundsException("Index "+ index);
+
+    return m_chars[index < m_gap ? index : index + m_gapEnd - m_gap];
+}
+
+@Override public CharSequence subSequence(int start, int end)
+{
+    if(start < 0 || start > end || end > length())
+        throw new IndexOutOfBoundsException(start +", "+ end);
+
+    StringBuilder s = new StringBuilder(end - start);
+
+    if(start < m_gap)
+        s.append(m_chars, start, Math.min(end, m_gap) - start);
+
+    if(end > m_gap)
+    {
+        int from = Math.max(start, m_gap);
+        s.append(m_chars, from + m_gapEnd - m_gap, end - from);
+    }
+
+    return s.toString();
+}
+
+@Override public String toString()
+{
+    return subSequence(0, length()).toString();
+}
+
+} // GapText
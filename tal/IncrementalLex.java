@@ -0,0 +1,167 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.util.function.*;
+
+/**
+ * Lexical analysis of a text after an edit, reusing the tokens of
+ * the previous analysis.
+ * <p>The text is analysed again from the last token read before the
+ * edit, until the analyser is going to read a token at the same place
+ * as before the edit. From there, the following tokens are the same,
+ * so they are only moved.
+ * The range of tokens that changed is reported, so the following
+ * phases can also skip the regions that did not change.
+ */
+public class IncrementalLex
+{
+private final TokenBuffer m_tokens;
+private final int m_first, m_removed, m_inserted;
+
+private IncrementalLex(TokenBuffer tokens,
+                       int first, int removed, int inserted)
+{
+    m_tokens   = tokens;
+    m_first    = first;
+    m_removed  = removed;
+    m_inserted = inserted;
+}
+
+/**
+ * Analyse a text after an edit.
+ * <p>The text, its lines and its tokens are changed in place, so the
+ * cost of an edit depends on the tokens analysed again and on the
+ * distance to the previous edit, but not on the size of the text.
+ * The first edit copies the text to a {@link GapText}.
+ * If the edited text cannot be analysed, the edit is undone.
+ * @param tokens   Tokens of the text, that are changed by the edit
+ * @param offset   Offset of the edit in the text
+ * @param removed  Number of characters removed at {@code offset}
+ * @param inserted Characters inserted at {@code offset}
+ * @param factory  Function to build an analyser for a source,
+ *                 for example {@code DFA::new}
+ * @return tokens of the edited text and the range that changed
+ */
+public static IncrementalLex edit(
+    TokenBuffer tokens, int offset, int removed, CharSequence inserted,
+    Function<Source,? extends ALex> factory)
+{
+    if(tokens.text() == null)
+        throw new IllegalArgumentException("The text is not available.");
+
+    GapText text = tokens.editText();
+    int textOffset = tokens.textOffset();
+
+    if(offset < textOffset || removed < 0 ||
+       offset + removed > textOffset + text.length())
+    {
+        throw new IndexOutOfBoundsException(
+            "Edit "+ offset +"+"+ removed +" out of the text.");
+    }
+
+    // Last token that began to be read before the edit.
+    int first = tokens.search(offset);
+    first = Math.max(0, first >= 0 ? first - 1 : -first - 2);
+
+    int start = tokens.start(first),
+        index = offset - textOffset;
+
+    // First token after the edit that will be read at the same place.
+    int shift = inserted.length() - removed,
+        end   = offset + inserted.length(),
+        sync[] = { tokens.size() };
+
+    IntPredicate stop = s ->
+    {
+        int i = s < end ? -1 : tokens.search(s - shift);
+
+        if(i >= 0)
+            sync[0] = i;
+
+        return i >= 0;
+    };
+
+    String old = text.subSequence(index, index + removed).toString();
+    text.replace(index, index + removed, inserted);
+    LineIndex lines = tokens.lines();
+    lines.edit(offset, removed, inserted);
+    TokenBuffer changed;
+
+    try
+    {
+        ALex lex = factory.apply(Source.of(text, start - textOffset,
+                                           text.length()));
+        lex.setOrigin(start, lines, tokens.symbols());
+        changed = tokenize(lex, stop);
+    }
+    catch(RuntimeException ex)
+    {
+        // The tokens still are the ones of the text before the edit.
+        text.replace(index, index + inserted.length(), old);
+        lines.edit(offset, inserted.length(), old);
+        throw ex;
+    }
+
+    tokens.replace(first, sync[0], changed, shift);
+    return new IncrementalLex(tokens, first, sync[0] - first,
+                              changed.size());
+}
+
+private static TokenBuffer tokenize(ALex lex, IntPredicate stop)
+{
+    try
+    {
+        return lex.tokenize(stop);
+    }
+    catch(IOException ex)
+    {
+        throw new UncheckedIOException(ex);
+    }
+}
+
+/**
+ * Get the tokens of the edited text.
+ * It is the same buffer that was edited.
+ * @return tokens of the edited text
+ */
+public TokenBuffer tokens()
+{
+    return m_tokens;
+}
+
+/**
+ * Get the index of the first token that changed.
+ * The previous tokens are the same as before the edit.
+ * @return index of the first token that changed
+ */
+public int first()
+{
+    return m_first;
+}
+
+/**
+ * Get the number of tokens of the previous analysis that were
+ * replaced, starting at {@link #first first}.
+ * @return number of replaced tokens
+ */
+public int removed()
+{
+    return m_removed;
+}
+
+/**
+ * Get the number of new tokens, starting at {@link #first first}.
+ * The following tokens are the same as before the edit, with their
+ * offsets moved.
+ * @return number of new tokens
+ */
+public int inserted()
+{
+    return m_inserted;
+}
+
+} // IncrementalLex
@@ -0,0 +1,418 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import static tal.Token.Type.*;
+
+/**
+ * Benchmark of the lexical analyser.
+ * <p>It compares the automaton running its states as Runnable objects
+ * with the same automaton compiled to a transition table, and the
+ * character classification of {@code ALex} with the Unicode functions
+ * of {@code Character}, and the analysis of decoded characters with
+ * the analysis of UTF-8 bytes, and the hand-written automaton with
+ * the automaton generated by {@code LexGenerator}, and the operators
+ * of two characters recognized in one step looking ahead.
+ */
+public class LexBench
+{
+/**
+ * Lexical analyser of the whole tal language.
+ */
+static class Lex extends ALex
+{
+Lex(Source source)
+{
+    super(source);
+    setStart(start());
+}
+
+Runnable start()
+{
+    return this::s_start;
+}
+
+private void s_start()
+{
+    if(isIdCharStart())
+        state(this::s_id);
+    else if(isDigitChar())
+        state(this::s_intval);
+    else if(isChar('"'))
+        stateNoChar(this::s_strval);
+    else if(isChar('='))
+        state(this::s_asign);
+    else if(isChar('<') || isChar('>'))
+        state(this::s_rel);
+    else if(isChar('!'))
+        state(this::s_neg);
+    else if(isChar('+') || isChar('-'))
+        state(this::s_sum);
+    else if(isChar('*') || isChar('/'))
+        state(this::s_mul);
+    else if(isChar('|'))
+        state(this::s_or);
+    else if(isChar('&'))
+        state(this::s_and);
+    else if(isChar('('))
+        state(this::s_lpar);
+    else if(isChar(')'))
+        state(this::s_rpar);
+    else if(isSpaceChar())
+        restart();
+    else if(isEofChar())
+        token(EOF);
+    else
+        error();
+}
+
+private void s_id()
+{
+    if(isIdChar())
+        state(this::s_id);
+    else
+        token(ID);
+}
+
+private void s_intval()
+{
+    if(isDigitChar())
+        state(this::s_intval);
+    else if(isIdChar())
+        error();
+    else
+        token(INTVAL);
+}
+
+private void s_strval()
+{
+    if(isChar('"'))
+        stateNoChar(this::s_strend);
+    else if(isChar('\n') || isEofChar())
+        error();
+    else
+        state(this::s_strval);
+}
+
+private void s_strend()
+{
+    token(STRVAL);
+}
+
+private void s_asign()
+{
+    if(isChar('='))
+        state(this::s_relend);
+    else
+        token(ASIGN);
+}
+
+private void s_rel()
+{
+    if(isChar('='))
+        state(this::s_relend);
+    else
+        token(REL);
+}
+
+private void s_neg()
+{
+    if(isChar('='))
+        state(this::s_relend);
+    else
+        token(NEG);
+}
+
+private void s_relend()
+{
+    token(REL);
+}
+
+private void s_sum()
+{
+    token(SUM);
+}
+
+private void s_mul()
+{
+    token(MUL);
+}
+
+private void s_or()
+{
+    if(isChar('|'))
+        state(this::s_orend);
+    else
+        error();
+}
+
+private void s_orend()
+{
+    token(OR);
+}
+
+private void s_and()
+{
+    if(isChar('&'))
+        state(this::s_andend);
+    else
+        error();
+}
+
+private void s_andend()
+{
+    token(AND);
+}
+
+private void s_lpar()
+{
+    token(LPAR);
+}
+
+private void s_rpar()
+{
+    token(RPAR);
+}
+
+} // Lex
+
+/**
+ * The same analyser classifying the characters only with the
+ * Unicode functions of {@code Character}.
+ */
+private static class UnicodeLex extends Lex
+{
+private UnicodeLex(Source source)
+{
+    super(source);
+}
+
+@Override public boolean isIdCharStart()
+{
+    return Character.isLetter(getChar()) || getChar() == '_';
+}
+
+@Override public boolean isIdChar()
+{
+    return Character.isLetter(getChar()) ||
+           Character.isDigit(getChar())  ||
+           getChar() == '_';
+}
+
+@Override public boolean isDigitChar()
+{
+    return Character.isDigit(getChar());
+}
+
+@Override public boolean isSpaceChar()
+{
+    return Character.isWhitespace(getChar());
+}
+
+} // UnicodeLex
+
+/**
+ * The same analyser recognizing the operators of two characters
+ * in the initial state, looking ahead the second character.
+ */
+private static class PeekLex extends Lex
+{
+private PeekLex(Source source)
+{
+    super(source);
+}
+
+@Override Runnable start()
+{
+    return this::s_peek;
+}
+
+private void s_peek()
+{
+    char c = getChar();
+
+    if((c == '=' || c == '<' || c == '>' || c == '!') && peek(1) == '=')
+    {
+        consume(2);
+        token(REL);
+    }
+    else if(c == '|' && peek(1) == '|')
+    {
+        consume(2);
+        token(OR);
+    }
+    else if(c == '&' && peek(1) == '&')
+    {
+        consume(2);
+        token(AND);
+    }
+    else
+    {
+        super.s_start();
+    }
+}
+
+} // PeekLex
+
+/**
+ * Generate a tal program with the indicated number of loops.
+ * @param loops number of loops
+ * @return text of the program
+ */
+private static String program(int loops)
+{
+    Random random = new Random(1);
+    StringBuilder s = new StringBuilder();
+
+    for(int i = 0; i < 100; i++)
+        s.append("integer v").append(i).append('\n');
+
+    s.append("string text\n");
+
+    for(int i = 0; i < loops; i++)
+    {
+        String v = "v"+ random.nextInt(100);
+        s.append("while ").append(v).append(" < ")
+         .append(random.nextInt(1000)).append(" && !(")
+         .append(v).append(" == 13)\n");
+        s.append("    ").append(v).append(" = ").append(v)
+         .append(" + (").append(random.nextInt(10)).append(" * v")
+         .append(random.nextInt(100)).append(" - 2) / 3\n");
+        s.append("    if ").append(v).append(" >= 500 || ")
+         .append(v).append(" != 7\n");
+        s.append("        text = \"loop ").append(i).append("\" + ")
+         .append(v).append("\n");
+        s.append("        print text\n");
+        s.append("    else\n");
+        s.append("        print ").append(v).append('\n');
+        s.append("    end\n");
+        s.append("end\n");
+    }
+
+    return s.toString();
+}
+
+private static long scan(Supplier<? extends ALex> factory,
+                         boolean compiled) throws IOException
+{
+    ALex lex = factory.get();
+
+    if(compiled)
+        lex.compile();
+
+    long tokens = 0;
+
+    while(lex.read().type != EOF)
+        tokens++;
+
+    return tokens;
+}
+
+private static void measure(String name, String text,
+                            Supplier<? extends ALex> factory,
+                            boolean compiled)
+    throws IOException
+{
+    final int warmup = 5, iterations = 10;
+
+    for(int i = 0; i < warmup; i++)
+        scan(factory, compiled);
+
+    long tokens = 0, time = System.nanoTime();
+
+    for(int i = 0; i < iterations; i++)
+        tokens += scan(factory, compiled);
+
+    time = (System.nanoTime() - time) / iterations;
+    tokens /= iterations;
+
+    System.out.printf("%-10s %8.2f ms  %8.2f MB/s  %6.1f ns/token"+
+                      "  (%d characters)\n",
+                      name, time / 1e6, text.length() * 1e3 / time,
+                      (double)time / tokens, text.length());
+}
+
+private static final String MODES[] =
+    { "unicode", "runnable", "lookahead", "table",
+      "decoder", "utf8", "generated" };
+
+/**
+ * Run the benchmark.
+ * <p>Each mode is measured in a new virtual machine, so the code
+ * compiled for a mode does not disturb the others.
+ * @param args Optional mode to measure and tal file to analyse.
+ *             If the file is not indicated, a program will be generated.
+ * @throws IOException
+ * @throws InterruptedException
+ */
+public static void main(String args[])
+    throws IOException, InterruptedException
+{
+    List<String> params = new ArrayList<>(Arrays.asList(args));
+    String mode = !params.isEmpty() && Arrays.asList(MODES)
+                  .contains(params.get(0)) ? params.remove(0) : null;
+
+    if(mode == null)
+    {
+        for(String m : MODES)
+        {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"),
+                                  "bin", "java").toString());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(LexBench.class.getName());
+            command.add(m);
+            command.addAll(params);
+            new ProcessBuilder(command).inheritIO().start().waitFor();
+        }
+
+        return;
+    }
+
+    String text = params.size() == 1
+        ? new String(Files.readAllBytes(Paths.get(params.get(0))),
+                     StandardCharsets.UTF_8)
+        : program(100000);
+
+    ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+
+    switch(mode)
+    {
+        case "unicode":
+            measure(mode, text, () -> new UnicodeLex(Source.of(text)), false);
+            break;
+        case "runnable":
+            measure(mode, text, () -> new Lex(Source.of(text)), false);
+            break;
+        case "lookahead":
+            measure(mode, text, () -> new PeekLex(Source.of(text)), false);
+            break;
+        case "table":
+            measure(mode, text, () -> new Lex(Source.of(text)), true);
+            break;
+        case "decoder":
+            measure(mode, text, () -> new Lex(Source.of(bytes.duplicate(),
+                                StandardCharsets.UTF_8)), true);
+            break;
+        case "utf8":
+            measure(mode, text, () -> new Lex(Source.ofUtf8(bytes)), true);
+            break;
+        case "generated":
+            LexGenerator g = TalParser.generator();
+            measure(mode, text, () -> g.lexer(Source.of(text)), false);
+            break;
+        default:
+            throw new AssertionError();
+    }
+}
+
+} // LexBench
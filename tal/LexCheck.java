@@ -0,0 +1,194 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.function.*;
+import static tal.Token.Type.*;
+
+/**
+ * Check of the ways of running the lexical analyser.
+ * <p>It analyses the same text running the states, with the compiled
+ * transition table, from a reader, from UTF-8 bytes and with the
+ * generated analyser, and compares the tokens, their identifiers and
+ * positions, and the size of the symbol table. The text has
+ * characters of 2, 3 and 4 bytes in UTF-8, so the columns after them
+ * must be the same when the bytes are not decoded.
+ * <p>It also edits the text at random with {@link IncrementalLex},
+ * and compares the tokens with the analysis of the whole edited text.
+ */
+public class LexCheck
+{
+private static final String TEXT =
+    "integer x\nstring text\n"+
+    "x = 1\n"+
+    "while x < 10 && !(x == 3)\n"+
+    "    text = \"x = \" + x\n"+
+    "    text = \"\u00f1\u20ac\ud83d\ude00 \" + text + x\n"+
+    "    print text\n"+
+    "    x = x + 1\n"+
+    "end\n"+
+    "print y\n";
+
+// Tokens of a text and size of the symbol table.
+private static String tokens(ALex lex) throws IOException
+{
+    StringBuilder s = new StringBuilder();
+    Set<String> names = new HashSet<>();
+    Token t;
+
+    do
+    {
+        t = lex.read();
+        s.append(t).append(" (").append(t.row()).append(':')
+         .append(t.column()).append(')');
+
+        if(t.type == ID)
+        {
+            s.append(" #").append(t.id);
+            names.add(t.name);
+
+            if(t.id < 0 || t.id >= names.size())
+                s.append(" wrong id");
+        }
+
+        s.append('\n');
+    }
+    while(t.type != EOF);
+
+    s.append("Symbols: ").append(lex.symbols().size());
+
+    if(lex.symbols().size() != names.size())
+        s.append(", expected ").append(names.size());
+
+    return s.append('\n').toString();
+}
+
+// Tokens of a buffer, with the offsets where they began to be read.
+private static String tokens(TokenBuffer b)
+{
+    StringBuilder s = new StringBuilder();
+
+    for(int i = 0; i < b.size(); i++)
+    {
+        s.append(b.type(i)).append(' ').append(b.name(i))
+         .append(" (").append(b.row(i)).append(':').append(b.column(i))
+         .append(") ").append(b.start(i)).append(' ').append(b.offset(i))
+         .append('+').append(b.length(i)).append('\n');
+    }
+
+    return s.toString();
+}
+
+// Edit the text at random, and count the edits whose tokens are
+// different from the tokens of the whole edited text.
+private static int edits(int count) throws IOException
+{
+    final String PIECES[] = { "x", " ", "\n", "while", "a1", "=", "==",
+                              "\"s\"", "\"", "12", "+", "(", "end",
+                              "print", "&&", "\u20ac" };
+    Random random = new Random(1);
+    String text = TEXT;
+    TokenBuffer tokens = new LexBench.Lex(Source.of(text)).tokenize();
+    int differences = 0;
+
+    for(int i = 0; i < count; i++)
+    {
+        int offset  = random.nextInt(text.length() + 1),
+            removed = Math.min(random.nextInt(6), text.length() - offset);
+        String inserted = random.nextInt(3) == 0 ? ""
+                        : PIECES[random.nextInt(PIECES.length)];
+        try
+        {
+            IncrementalLex.edit(tokens, offset, removed, inserted,
+                                LexBench.Lex::new);
+
+            text = text.substring(0, offset) + inserted +
+                   text.substring(offset + removed);
+        }
+        catch(RuntimeException ex)
+        {
+            // The edit was undone.
+        }
+
+        String expected = tokens(
+            new LexBench.Lex(Source.of(text)).tokenize());
+
+        if(!tokens(tokens).equals(expected))
+        {
+            differences++;
+            System.out.println("Edit "+ i +":");
+            System.out.print(text);
+            System.out.print(tokens(tokens));
+        }
+    }
+
+    return differences;
+}
+
+// Compiled analyser.
+private static ALex compiled(Source source)
+{
+    ALex lex = new LexBench.Lex(source);
+    lex.compile();
+    return lex;
+}
+
+/**
+ * Run the check.
+ * @param args Not used.
+ * @throws IOException
+ */
+public static void main(String args[]) throws IOException
+{
+    String text = TEXT;
+    ByteBuffer bytes = ByteBuffer.wrap(
+        text.getBytes(StandardCharsets.UTF_8));
+    LexGenerator generator = TalParser.generator();
+
+    // The compiled analysers are checked before the others, because
+    // the table is compiled by the first instance of each class.
+    Map<String,Supplier<ALex>> modes = new LinkedHashMap<>();
+    modes.put("table",     () -> compiled(Source.of(text)));
+    modes.put("runnable",  () -> new LexBench.Lex(Source.of(text)));
+    modes.put("reader",    () -> compiled(
+                                     Source.of(new StringReader(text))));
+    modes.put("utf8",      () -> compiled(
+                                     Source.ofUtf8(bytes.duplicate())));
+    modes.put("generated", () -> generator.lexer(Source.of(text)));
+
+    String expected = null;
+    int differences = 0;
+
+    for(Map.Entry<String,Supplier<ALex>> m : modes.entrySet())
+    {
+        String tokens = tokens(m.getValue().get());
+
+        if(expected == null)
+            expected = tokens;
+
+        if(!tokens.equals(expected) || tokens.contains("wrong") ||
+           tokens.contains("expected"))
+        {
+            differences++;
+            System.out.println(m.getKey() +":");
+            System.out.print(tokens);
+        }
+    }
+
+    System.out.println(modes.size() +" modes, "+
+                       differences +" differences");
+
+    int edits = 10000, wrong = edits(edits);
+    System.out.println(edits +" edits, "+ wrong +" differences");
+
+    if(differences > 0 || wrong > 0)
+        System.exit(1);
+}
+
+} // LexCheck
@@ -0,0 +1,1011 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.util.*;
+
+/**
+ * Generator of lexical analysers from regular expressions.
+ * <p>Each regular expression is turned into a non-deterministic automaton,
+ * the automata are joined and made deterministic with the subset
+ * construction, and the result is minimized with the Hopcroft algorithm.
+ * The automaton can be used as a transition table of {@code ALex},
+ * or written as the Java source of a subclass of {@code ALex}.
+ * <p>As the hand-written analysers, the automaton reads only one
+ * character after the token, so a token ends when the next character
+ * does not continue any expression. If the expressions that can be
+ * continued are not complete, the character is an error.
+ * When several expressions match the same text, the first one wins.
+ * <p>The regular expressions can contain:
+ * <ul>
+ * <li>{@code |} alternatives, {@code ( )} groups and the operators
+ *     {@code * + ?}.</li>
+ * <li>{@code [ ]} sets of characters, with ranges {@code a-z},
+ *     or {@code [^ ]} to exclude them.</li>
+ * <li>{@code .} for any character but the line break.</li>
+ * <li>{@code \d} digits, {@code \l} letters and {@code \s} blanks,
+ *     as the functions of {@code Character}.</li>
+ * <li>{@code \n \r \t} and {@code \} before any other character
+ *     to take it literally.</li>
+ * <li>{@code { }} for characters that are discarded from the name of
+ *     the token, for example, the double quotes of a string.</li>
+ * </ul>
+ */
+public class LexGenerator
+{
+// Kinds of expressions.
+private static final int TOKEN  = 0,
+                         SKIP   = 1,
+                         REJECT = 2;
+
+// Actions of the generated automaton that are not transitions.
+// The transitions are the target state by 2 plus 1 if the
+// character is added to the name of the token.
+private static final int ERROR = -1;
+
+private static final char EOF_CHAR = Character.MAX_VALUE;
+
+private static class Edge
+{
+    // Characters of the edge, or null if it is an empty transition.
+    private final BitSet chars;
+    private final boolean keep;
+    private final int target;
+
+    private Edge(BitSet chars, boolean keep, int target)
+    {
+        this.chars  = chars;
+        this.keep   = keep;
+        this.target = target;
+    }
+} // Edge
+
+// Non-deterministic automaton of all the expressions.
+private final List<List<Edge>> m_edges = new ArrayList<>();
+private final List<Integer> m_accepts = new ArrayList<>();
+
+// Kind, token type and initial node of each expression.
+private final List<Integer> m_kinds = new ArrayList<>();
+private final List<Token.Type> m_types = new ArrayList<>();
+private final List<Integer> m_starts = new ArrayList<>();
+
+// Minimized automaton.
+private char[] m_classes;
+private int[][] m_actions;
+
+/**
+ * Add an expression of a token.
+ * @param regex Regular expression of the token
+ * @param type  Type of the token
+ */
+public void token(String regex, Token.Type type)
+{
+    add(regex, TOKEN, type);
+}
+
+/**
+ * Add an expression of text that is not a token,
+ * for example, blanks or comments.
+ * @param regex Regular expression of the discarded text
+ */
+public void skip(String regex)
+{
+    add(regex, SKIP, null);
+}
+
+/**
+ * Add an expression of text that is an error, although it begins
+ * with a token. For example, {@code \d+\l} rejects an integer
+ * followed by a letter.
+ * @param regex Regular expression of the wrong text
+ */
+public void reject(String regex)
+{
+    add(regex, REJECT, null);
+}
+
+private void add(String regex, int kind, Token.Type type)
+{
+    Parser parser = new Parser(regex, kind != SKIP);
+    int[] fragment = parser.parse();
+
+    m_accepts.set(fragment[1], m_kinds.size());
+    m_kinds.add(kind);
+    m_types.add(type);
+    m_starts.add(fragment[0]);
+    m_actions = null;
+}
+
+private int node()
+{
+    m_edges.add(new ArrayList<>());
+    m_accepts.add(-1);
+    return m_edges.size() - 1;
+}
+
+private void edge(int from, BitSet chars, boolean keep, int to)
+{
+    m_edges.get(from).add(new Edge(chars, keep, to));
+}
+
+/**
+ * Parser of a regular expression that builds its automaton.
+ * Each fragment of the automaton is an array with its initial
+ * and final nodes.
+ */
+private class Parser
+{
+    private final String m_regex;
+    private int m_position;
+    private boolean m_keep;
+
+    private Parser(String regex, boolean keep)
+    {
+        m_regex = regex;
+        m_keep  = keep;
+    }
+
+    private int[] parse()
+    {
+        int[] f = alternative();
+
+        if(m_position < m_regex.length())
+            throw error();
+
+        return f;
+    }
+
+    private RuntimeException error()
+    {
+        return new RuntimeException("Invalid regular expression at "+
+                                    m_position +": "+ m_regex);
+    }
+
+    private boolean more()
+    {
+        return m_position < m_regex.length();
+    }
+
+    private char peek()
+    {
+        return m_regex.charAt(m_position);
+    }
+
+    private char next()
+    {
+        if(!more())
+            throw error();
+
+        return m_regex.charAt(m_position++);
+    }
+
+    private int[] alternative()
+    {
+        int[] f = sequence();
+
+        while(more() && peek() == '|')
+        {
+            m_position++;
+            int[] g = sequence();
+            int s = node(), e = node();
+            edge(s, null, false, f[0]);
+            edge(s, null, false, g[0]);
+            edge(f[1], null, false, e);
+            edge(g[1], null, false, e);
+            f = new int[] { s, e };
+        }
+
+        return f;
+    }
+
+    private int[] sequence()
+    {
+        int s = node(), e = s;
+
+        while(more() && peek() != '|' && peek() != ')' && peek() != '}')
+        {
+            int[] f = repetition();
+            edge(e, null, false, f[0]);
+            e = f[1];
+        }
+
+        return new int[] { s, e };
+    }
+
+    private int[] repetition()
+    {
+        int[] f = atom();
+
+        while(more() && (peek() == '*' || peek() == '+' || peek() == '?'))
+        {
+            char op = next();
+            int s = node(), e = node();
+            edge(s, null, false, f[0]);
+            edge(f[1], null, false, e);
+
+            if(op != '+')
+                edge(s, null, false, e);
+
+            if(op != '?')
+                edge(f[1], null, false, f[0]);
+
+            f = new int[] { s, e };
+        }
+
+        return f;
+    }
+
+    private int[] atom()
+    {
+        char c = next();
+
+        if(c == '(' || c == '{')
+        {
+            boolean keep = m_keep;
+
+            if(c == '{')
+                m_keep = false;
+
+            int[] f = alternative();
+            m_keep = keep;
+
+            if(next() != (c == '(' ? ')' : '}'))
+                throw error();
+
+            return f;
+        }
+
+        BitSet chars;
+
+        if(c == '[')
+            chars = set();
+        else if(c == '.')
+            chars = not(single('\n'));
+        else if(c == '\\')
+            chars = escape();
+        else if(c == '*' || c == '+' || c == '?' || c == ']')
+            throw error();
+        else
+            chars = single(c);
+
+        int s = node(), e = node();
+        edge(s, chars, m_keep, e);
+        return new int[] { s, e };
+    }
+
+    private BitSet set()
+    {
+        boolean negated = more() && peek() == '^';
+        BitSet chars = new BitSet();
+
+        if(negated)
+            m_position++;
+
+        do
+        {
+            char c = next();
+
+            if(c == '\\')
+            {
+                BitSet e = escape();
+
+                if(e.cardinality() != 1)
+                {
+                    chars.or(e);
+                    continue;
+                }
+
+                c = (char)e.nextSetBit(0);
+            }
+
+            if(more() && peek() == '-' && m_position + 1 < m_regex.length()
+               && m_regex.charAt(m_position + 1) != ']')
+            {
+                m_position++;
+                char last = next();
+
+                if(last == '\\')
+                    last = (char)escape().nextSetBit(0);
+
+                if(last < c)
+                    throw error();
+
+                chars.set(c, last + 1);
+            }
+            else
+            {
+                chars.set(c);
+            }
+        }
+        while(peek() != ']');
+
+        m_position++;
+        return negated ? not(chars) : chars;
+    }
+
+    private BitSet escape()
+    {
+        char c = next();
+
+        switch(c)
+        {
+            case 'n': return single('\n');
+            case 'r': return single('\r');
+            case 't': return single('\t');
+            case 'd':
+            case 'l':
+            case 's': return unicode(c);
+            default:  return single(c);
+        }
+    }
+} // Parser
+
+private static BitSet single(char c)
+{
+    BitSet chars = new BitSet();
+    chars.set(c);
+    return chars;
+}
+
+private static BitSet not(BitSet chars)
+{
+    BitSet n = (BitSet)chars.clone();
+    n.flip(0, EOF_CHAR);
+    n.clear(EOF_CHAR);
+    return n;
+}
+
+private static BitSet unicode(char kind)
+{
+    BitSet chars = new BitSet();
+
+    for(char c = 0; c < EOF_CHAR; c++)
+    {
+        if(kind == 'd' ? Character.isDigit(c) :
+           kind == 'l' ? Character.isLetter(c) :
+                         Character.isWhitespace(c))
+        {
+            chars.set(c);
+        }
+    }
+
+    return chars;
+}
+
+/**
+ * Get the number of states of the minimized automaton.
+ * @return number of states
+ */
+public int states()
+{
+    build();
+    return m_actions.length;
+}
+
+/**
+ * Get the number of character classes of the minimized automaton.
+ * @return number of character classes
+ */
+public int charClasses()
+{
+    build();
+    return m_actions[0].length;
+}
+
+/**
+ * Build an analyser that runs the transition table of the automaton.
+ * @param source Text that must be analysed
+ * @return lexical analyser
+ */
+public ALex lexer(Source source)
+{
+    build();
+    int n = m_actions[0].length;
+    int[] actions = new int[m_actions.length * n];
+
+    for(int s = 0; s < m_actions.length; s++)
+    {
+        for(int k = 0; k < n; k++)
+        {
+            int a = m_actions[s][k];
+
+            if(a == ERROR)
+                a = ALex.ERROR;
+            else if(a < 0)
+                a = -2 - a << 3 | ALex.TOKEN;
+            else if(a >> 1 == 0)
+                a = ALex.RESTART;
+            else
+                a = (a >> 1) * n << 3 | ((a & 1) != 0 ? ALex.STATE
+                                                      : ALex.NOCHAR);
+            actions[s * n + k] = a;
+        }
+    }
+
+    ALex lex = new ALex(source);
+    lex.setTable(m_classes, actions);
+    return lex;
+}
+
+/**
+ * Write the Java source of an analyser of the {@code tal} package
+ * with a method for each state of the automaton.
+ * @param name Name of the class
+ * @return Java source of the class
+ */
+public String java(String name)
+{
+    build();
+    StringBuilder s = new StringBuilder();
+
+    s.append("/*\n * Generated by LexGenerator.\n */\n");
+    s.append("package tal;\n\n");
+    s.append("import java.io.*;\n");
+    s.append("import static tal.Token.Type.*;\n\n");
+    s.append("/**\n * Lexical analyser generated from regular ");
+    s.append("expressions.\n */\n");
+    s.append("public class ").append(name).append(" extends ALex\n{\n");
+
+    // The character classes are written as runs of characters.
+    s.append("// Last character and class of each run of characters.\n");
+    s.append("private static final String RUNS =\n    \"");
+
+    for(int c = 0, line = 0; c <= EOF_CHAR; c++)
+    {
+        if(c == EOF_CHAR || m_classes[c] != m_classes[c + 1])
+        {
+            if(line++ == 8)
+            {
+                s.append("\" +\n    \"");
+                line = 1;
+            }
+
+            literal(s, (char)c);
+            literal(s, m_classes[c]);
+        }
+    }
+
+    s.append("\";\n\n");
+    s.append("private static final char CLASSES[] =\n");
+    s.append("    new char[Character.MAX_VALUE + 1];\n\n");
+    s.append("static\n{\n");
+    s.append("    for(int i = 0, c = 0; i < RUNS.length(); i += 2)\n");
+    s.append("    {\n");
+    s.append("        while(c <= RUNS.charAt(i))\n");
+    s.append("            CLASSES[c++] = RUNS.charAt(i + 1);\n");
+    s.append("    }\n}\n\n");
+
+    s.append("/**\n * Build the automaton.\n");
+    s.append(" * @param file Text file that must be analysed\n");
+    s.append(" * @throws IOException\n */\n");
+    s.append("public ").append(name);
+    s.append("(String file) throws IOException\n{\n");
+    s.append("    super(file);\n    setStart(this::s_0);\n}\n\n");
+    s.append("/**\n * Build the automaton.\n");
+    s.append(" * @param source Text that must be analysed\n */\n");
+    s.append("public ").append(name).append("(Source source)\n{\n");
+    s.append("    super(source);\n    setStart(this::s_0);\n}\n");
+
+    for(int state = 0; state < m_actions.length; state++)
+        javaState(s, state);
+
+    s.append("\n} // ").append(name).append('\n');
+    return s.toString();
+}
+
+private void javaState(StringBuilder s, int state)
+{
+    int[] row = m_actions[state];
+
+    // The most frequent action is the default one.
+    Map<Integer,Integer> counts = new HashMap<>();
+
+    for(int a : row)
+        counts.merge(a, 1, Integer::sum);
+
+    int other = Collections.max(counts.entrySet(),
+                                Map.Entry.comparingByValue()).getKey();
+
+    s.append("\nprivate void s_").append(state).append("()\n{\n");
+    s.append("    switch(CLASSES[getChar()])\n    {\n");
+
+    Set<Integer> written = new HashSet<>();
+
+    for(int k = 0; k < row.length; k++)
+    {
+        int a = row[k];
+
+        if(a == other || !written.add(a))
+            continue;
+
+        for(int j = k; j < row.length; j++)
+        {
+            if(row[j] == a)
+                s.append("        case ").append(j).append(":\n");
+        }
+
+        s.append("            ");
+        javaAction(s, a);
+        s.append("            break;\n");
+    }
+
+    s.append("        default:\n            ");
+    javaAction(s, other);
+    s.append("    }\n}\n");
+}
+
+private static void javaAction(StringBuilder s, int a)
+{
+    if(a == ERROR)
+        s.append("error();\n");
+    else if(a < 0)
+        s.append("token(").append(Token.Type.values()[-2 - a]).append(");\n");
+    else if(a >> 1 == 0)
+        s.append("restart();\n");
+    else if((a & 1) != 0)
+        s.append("state(this::s_").append(a >> 1).append(");\n");
+    else
+        s.append("stateNoChar(this::s_").append(a >> 1).append(");\n");
+}
+
+private static void literal(StringBuilder s, char c)
+{
+    if(c == '\n')
+        s.append("\\n");
+    else if(c == '\r')
+        s.append("\\r");
+    else if(c == '"')
+        s.append("\\\"");
+    else if(c == '\\')
+        s.append("\\\\");
+    else if(c >= ' ' && c <= '~')
+        s.append(c);
+    else
+        s.append(String.format("\\u%04x", (int)c));
+}
+
+private void build()
+{
+    if(m_actions != null)
+        return;
+
+    if(m_kinds.isEmpty())
+        throw new RuntimeException("There are not expressions.");
+
+    int[] classes = splitChars();
+    int numClasses = 0;
+
+    for(int k : classes)
+        numClasses = Math.max(numClasses, k + 1);
+
+    int[][] actions = determinize(classes, numClasses);
+    actions = minimize(actions);
+
+    // The classes with the same actions in all the states are joined.
+    Map<List<Integer>,Integer> columns = new HashMap<>();
+    int[] joined = new int[numClasses];
+
+    for(int k = 0; k < numClasses; k++)
+    {
+        List<Integer> column = new ArrayList<>();
+
+        for(int[] row : actions)
+            column.add(row[k]);
+
+        joined[k] = columns.computeIfAbsent(column, x -> columns.size());
+    }
+
+    m_classes = new char[EOF_CHAR + 1];
+
+    for(int c = 0; c <= EOF_CHAR; c++)
+        m_classes[c] = (char)joined[classes[c]];
+
+    m_actions = new int[actions.length][columns.size()];
+
+    for(int s = 0; s < actions.length; s++)
+    {
+        for(int k = 0; k < numClasses; k++)
+            m_actions[s][joined[k]] = actions[s][k];
+    }
+}
+
+// Split the characters in classes that are not distinguished
+// by any edge of the automaton.
+private int[] splitChars()
+{
+    int[] classes = new int[EOF_CHAR + 1];
+    Map<Long,Integer> refined = new HashMap<>();
+    List<BitSet> sets = new ArrayList<>();
+    sets.add(single(EOF_CHAR));
+
+    for(List<Edge> edges : m_edges)
+    {
+        for(Edge e : edges)
+        {
+            if(e.chars != null)
+                sets.add(e.chars);
+        }
+    }
+
+    for(BitSet set : sets)
+    {
+        refined.clear();
+        long last = -1;
+        int k = 0;
+
+        for(int c = 0; c <= EOF_CHAR; c++)
+        {
+            long key = (long)classes[c] << 1 | (set.get(c) ? 1 : 0);
+
+            if(key != last)
+            {
+                last = key;
+                k = refined.computeIfAbsent(key, x -> refined.size());
+            }
+
+            classes[c] = k;
+        }
+    }
+
+    return classes;
+}
+
+// Subset construction of the deterministic automaton.
+private int[][] determinize(int[] classes, int numClasses)
+{
+    // A character of each class.
+    char[] chars = new char[numClasses];
+
+    for(int c = EOF_CHAR; c >= 0; c--)
+        chars[classes[c]] = (char)c;
+
+    Map<BitSet,Integer> ids = new HashMap<>();
+    List<BitSet> subsets = new ArrayList<>();
+    List<int[]> rows = new ArrayList<>();
+
+    BitSet start = new BitSet();
+
+    for(int s : m_starts)
+        start.set(s);
+
+    closure(start);
+    ids.put(start, 0);
+    subsets.add(start);
+
+    for(int i = 0; i < subsets.size(); i++)
+    {
+        BitSet subset = subsets.get(i);
+        int[] row = new int[numClasses];
+
+        for(int k = 0; k < numClasses; k++)
+        {
+            BitSet target = new BitSet();
+            int keep = -1;
+
+            for(int n = subset.nextSetBit(0); n >= 0;
+                n = subset.nextSetBit(n + 1))
+            {
+                for(Edge e : m_edges.get(n))
+                {
+                    if(e.chars == null || !e.chars.get(chars[k]))
+                        continue;
+
+                    if(keep >= 0 && keep != (e.keep ? 1 : 0))
+                    {
+                        throw new RuntimeException(
+                            "The character '"+ chars[k] +"' is discarded"+
+                            " and kept from the name of a token.");
+                    }
+
+                    keep = e.keep ? 1 : 0;
+                    target.set(e.target);
+                }
+            }
+
+            if(target.isEmpty())
+            {
+                row[k] = ERROR;
+                continue;
+            }
+
+            closure(target);
+            Integer id = ids.get(target);
+
+            if(id == null)
+            {
+                id = subsets.size();
+                ids.put(target, id);
+                subsets.add(target);
+            }
+
+            row[k] = id << 1 | keep;
+        }
+
+        rows.add(row);
+    }
+
+    int[][] actions = rows.toArray(new int[rows.size()][]);
+
+    // Actions of the characters without transition.
+    int eof = classes[EOF_CHAR];
+
+    if(accepted(subsets.get(0)) >= 0)
+        throw new RuntimeException("An expression matches the empty text.");
+
+    actions[0][eof] = -2 - Token.Type.EOF.ordinal();
+
+    for(int i = 0; i < actions.length; i++)
+    {
+        int p = accepted(subsets.get(i));
+
+        for(int k = 0; k < numClasses; k++)
+        {
+            if(actions[i][k] != ERROR || p < 0)
+                continue;
+
+            // After a discarded text the next character
+            // is read by the initial state.
+            if(m_kinds.get(p) == SKIP)
+                actions[i][k] = actions[0][k];
+            else if(m_kinds.get(p) == TOKEN)
+                actions[i][k] = -2 - m_types.get(p).ordinal();
+        }
+    }
+
+    removeDeadStates(actions);
+    return actions;
+}
+
+private void closure(BitSet nodes)
+{
+    Deque<Integer> stack = new ArrayDeque<>();
+
+    for(int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1))
+        stack.push(n);
+
+    while(!stack.isEmpty())
+    {
+        for(Edge e : m_edges.get(stack.pop()))
+        {
+            if(e.chars == null && !nodes.get(e.target))
+            {
+                nodes.set(e.target);
+                stack.push(e.target);
+            }
+        }
+    }
+}
+
+// First expression accepted by a set of nodes, or -1.
+private int accepted(BitSet nodes)
+{
+    int p = -1;
+
+    for(int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1))
+    {
+        int a = m_accepts.get(n);
+
+        if(a >= 0 && (p < 0 || a < p))
+            p = a;
+    }
+
+    return p;
+}
+
+// The transitions to states that cannot read any token are errors,
+// so the error is found at the first wrong character.
+private static void removeDeadStates(int[][] actions)
+{
+    boolean[] live = new boolean[actions.length];
+    boolean changed = true;
+
+    while(changed)
+    {
+        changed = false;
+
+        for(int s = 0; s < actions.length; s++)
+        {
+            if(live[s])
+                continue;
+
+            for(int a : actions[s])
+            {
+                if(a < ERROR || (a >= 0 && live[a >> 1]))
+                {
+                    live[s] = changed = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    for(int[] row : actions)
+    {
+        for(int k = 0; k < row.length; k++)
+        {
+            if(row[k] >= 0 && !live[row[k] >> 1])
+                row[k] = ERROR;
+        }
+    }
+}
+
+// Hopcroft minimization of the reachable states.
+private static int[][] minimize(int[][] actions)
+{
+    int numClasses = actions[0].length;
+
+    // Reachable states.
+    int[] reached = new int[actions.length];
+    Arrays.fill(reached, -1);
+    List<Integer> order = new ArrayList<>();
+    reached[0] = 0;
+    order.add(0);
+
+    for(int i = 0; i < order.size(); i++)
+    {
+        for(int a : actions[order.get(i)])
+        {
+            if(a >= 0 && reached[a >> 1] < 0)
+            {
+                reached[a >> 1] = order.size();
+                order.add(a >> 1);
+            }
+        }
+    }
+
+    int n = order.size();
+    int[][] rows = new int[n][];
+
+    for(int s = 0; s < n; s++)
+    {
+        rows[s] = actions[order.get(s)].clone();
+
+        for(int k = 0; k < numClasses; k++)
+        {
+            int a = rows[s][k];
+
+            if(a >= 0)
+                rows[s][k] = reached[a >> 1] << 1 | (a & 1);
+        }
+    }
+
+    // Predecessors of each state by each class.
+    List<List<List<Integer>>> inverse = new ArrayList<>();
+
+    for(int k = 0; k < numClasses; k++)
+    {
+        List<List<Integer>> sources = new ArrayList<>();
+
+        for(int s = 0; s < n; s++)
+            sources.add(new ArrayList<>());
+
+        for(int s = 0; s < n; s++)
+        {
+            if(rows[s][k] >= 0)
+                sources.get(rows[s][k] >> 1).add(s);
+        }
+
+        inverse.add(sources);
+    }
+
+    // The initial blocks have the same actions without the targets.
+    int[] block = new int[n];
+    List<List<Integer>> blocks = new ArrayList<>();
+    Map<List<Integer>,Integer> signatures = new HashMap<>();
+
+    for(int s = 0; s < n; s++)
+    {
+        List<Integer> signature = new ArrayList<>();
+
+        for(int a : rows[s])
+            signature.add(a >= 0 ? a & 1 : a);
+
+        Integer b = signatures.get(signature);
+
+        if(b == null)
+        {
+            b = blocks.size();
+            signatures.put(signature, b);
+            blocks.add(new ArrayList<>());
+        }
+
+        block[s] = b;
+        blocks.get(b).add(s);
+    }
+
+    Deque<long[]> work = new ArrayDeque<>();
+    Set<Long> pending = new HashSet<>();
+
+    for(int b = 0; b < blocks.size(); b++)
+    {
+        for(int k = 0; k < numClasses; k++)
+        {
+            work.add(new long[] { b, k });
+            pending.add((long)b * numClasses + k);
+        }
+    }
+
+    while(!work.isEmpty())
+    {
+        long[] splitter = work.poll();
+        int b = (int)splitter[0], k = (int)splitter[1];
+        pending.remove((long)b * numClasses + k);
+
+        // States that go to the block with the class, by their block.
+        Map<Integer,List<Integer>> touched = new HashMap<>();
+
+        for(int t : blocks.get(b))
+        {
+            for(int s : inverse.get(k).get(t))
+                touched.computeIfAbsent(block[s], x -> new ArrayList<>())
+                       .add(s);
+        }
+
+        for(Map.Entry<Integer,List<Integer>> e : touched.entrySet())
+        {
+            int y = e.getKey();
+            List<Integer> moved = e.getValue();
+
+            if(moved.size() == blocks.get(y).size())
+                continue;
+
+            int z = blocks.size();
+            blocks.add(moved);
+
+            for(int s : moved)
+                block[s] = z;
+
+            List<Integer> rest = new ArrayList<>();
+
+            for(int s : blocks.get(y))
+            {
+                if(block[s] == y)
+                    rest.add(s);
+            }
+
+            blocks.set(y, rest);
+
+            for(int c = 0; c < numClasses; c++)
+            {
+                int w = pending.contains((long)y * numClasses + c) ||
+                        moved.size() < rest.size() ? z : y;
+
+                if(pending.add((long)w * numClasses + c))
+                    work.add(new long[] { w, c });
+            }
+        }
+    }
+
+    // The block of the initial state must be the first one.
+    int[] number = new int[blocks.size()];
+    Arrays.fill(number, -1);
+    number[block[0]] = 0;
+    int count = 1;
+
+    for(int b = 0; b < blocks.size(); b++)
+    {
+        if(number[b] < 0)
+            number[b] = count++;
+    }
+
+    int[][] minimized = new int[count][];
+
+    for(int b = 0; b < blocks.size(); b++)
+    {
+        int[] row = rows[blocks.get(b).get(0)].clone();
+
+        for(int k = 0; k < numClasses; k++)
+        {
+            if(row[k] >= 0)
+                row[k] = number[block[row[k] >> 1]] << 1 | (row[k] & 1);
+        }
+
+        minimized[number[b]] = row;
+    }
+
+    return minimized;
+}
+
+} // LexGenerator
@@ -0,0 +1,245 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.nio.*;
+
+/**
+ * Offsets where the lines of a text begin.
+ * <p>The lexical analyser only keeps the offset of each character,
+ * and this index gives the row and column of an offset when they
+ * are needed, for example, in an error message.
+ * <p>The index can be read while the analyser adds lines in another
+ * thread, for example, when the tokens are read through a pipe.
+ * <p>The array of offsets has a gap at the place of the last edit.
+ * The offsets after the gap are stored without the displacement of
+ * the edits, so an edit does not need to move the following lines.
+ */
+class LineIndex
+{
+private final int m_row;
+private int[] m_starts = new int[256];
+private int m_size, m_gap, m_shift;
+
+// Text encoded in UTF-8 that is scanned when it is needed.
+private final ByteBuffer m_bytes;
+private int m_scanned;
+
+/**
+ * Build an index with only one line.
+ * @param offset Offset of the first line
+ * @param row    Row of the first line
+ */
+LineIndex(int offset, int row)
+{
+    m_row = row;
+    m_starts[0] = offset;
+    m_size = m_gap = 1;
+    m_bytes = null;
+}
+
+/**
+ * Build an index of a text encoded in UTF-8.
+ * The lines are searched only when a row or column is requested.
+ * @param bytes  Text encoded in UTF-8
+ * @param offset Offset of the first line
+ */
+LineIndex(ByteBuffer bytes, int offset)
+{
+    m_row = 1;
+    m_starts[0] = offset;
+    m_size = m_gap = 1;
+    m_bytes = bytes;
+    m_scanned = offset;
+}
+
+// Search the lines of the bytes until an offset.
+private void scan(int offset)
+{
+    int end = Math.min(offset, m_bytes.limit());
+
+    for(; m_scanned < end; m_scanned++)
+    {
+        if(m_bytes.get(m_scanned) == '\n')
+            add(m_scanned + 1);
+    }
+}
+
+/**
+ * Add the lines that begin in a range of a block of characters.
+ * @param chars  Block of characters
+ * @param from   Index of the first character of the range
+ * @param to     Index after the last character of the range
+ * @param offset Offset of the first character of the block
+ */
+synchronized void scan(char[] chars, int from, int to, int offset)
+{
+    for(int i = from; i < to; i++)
+    {
+        if(chars[i] == '\n')
+            add(offset + i + 1);
+    }
+}
+
+/**
+ * Add the lines of another index that begin after the last line.
+ * @param index Index of the following text
+ */
+synchronized void append(LineIndex index)
+{
+    for(int i = 0; i < index.m_size; i++)
+        add(index.start(i));
+}
+
+// Add a line after the last one.
+private void add(int offset)
+{
+    if(offset <= start(m_size - 1))
+        return;
+
+    moveGap(m_size);
+    insert(offset);
+}
+
+// Add a line at the gap.
+private void insert(int offset)
+{
+    if(m_size == m_starts.length)
+    {
+        // The lines after the gap are moved to the end.
+        int after = m_size - m_gap;
+        int[] starts = new int[m_size * 2];
+        System.arraycopy(m_starts, 0, starts, 0, m_gap);
+        System.arraycopy(m_starts, m_gap, starts,
+                         starts.length - after, after);
+        m_starts = starts;
+    }
+
+    m_starts[m_gap++] = offset;
+    m_size++;
+}
+
+// Offset where a line begins.
+private int start(int line)
+{
+    return line < m_gap ? m_starts[line]
+                        : m_starts[line + m_starts.length - m_size] + m_shift;
+}
+
+// Move the gap before a line, moving the lines between them.
+private void moveGap(int line)
+{
+    int length = m_starts.length - m_size;
+
+    for(; m_gap > line; m_gap--)
+        m_starts[m_gap - 1 + length] = m_starts[m_gap - 1] - m_shift;
+
+    for(; m_gap < line; m_gap++)
+        m_starts[m_gap] = m_starts[m_gap + length] + m_shift;
+
+    if(m_gap == m_size)
+        m_shift = 0;
+}
+
+/**
+ * Change the index after an edit of the text.
+ * Only the lines between the edit and the previous one are moved.
+ * @param offset   Offset of the edit
+ * @param removed  Number of characters removed
+ * @param inserted Characters inserted
+ */
+synchronized void edit(int offset, int removed, CharSequence inserted)
+{
+    if(m_bytes != null)
+        throw new AssertionError("Lines of bytes cannot be edited.");
+
+    // The lines that begin after a removed line break are removed.
+    int first = line(offset) + 1,
+        end   = line(offset + removed) + 1;
+
+    moveGap(first);
+    m_size -= end - first;
+    m_shift += inserted.length() - removed;
+
+    for(int i = 0; i < inserted.length(); i++)
+    {
+        if(inserted.charAt(i) == '\n')
+            insert(offset + i + 1);
+    }
+}
+
+/**
+ * Get the number of lines.
+ * @return number of lines
+ */
+synchronized int size()
+{
+    return m_size;
+}
+
+// Index of the line that contains an offset.
+private int line(int offset)
+{
+    if(m_bytes != null)
+        scan(offset);
+
+    int low = 0, high = m_size - 1;
+
+    while(low < high)
+    {
+        int mid = (low + high + 1) >>> 1;
+
+        if(start(mid) <= offset)
+            low = mid;
+        else
+            high = mid - 1;
+    }
+
+    return low;
+}
+
+/**
+ * Get the row of an offset.
+ * @param offset Offset in the text
+ * @return row where the offset is
+ */
+synchronized int row(int offset)
+{
+    return m_row + line(offset);
+}
+
+/**
+ * Get the column of an offset.
+ * The columns count UTF-16 characters, so a character out of the
+ * Basic Multilingual Plane takes two columns, both in a text of
+ * characters and in a text of UTF-8 bytes.
+ * @param offset Offset in the text
+ * @return column where the offset is
+ */
+synchronized int column(int offset)
+{
+    int start = start(line(offset));
+
+    if(m_bytes == null)
+        return offset - start + 1;
+
+    // Count the UTF-16 characters, not the bytes, as when the text
+    // is decoded: a character of 4 bytes is a surrogate pair.
+    int column = 1;
+
+    for(int i = start; i < offset && i < m_bytes.limit(); i++)
+    {
+        int b = m_bytes.get(i);
+
+        if((b & 0xF8) == 0xF0)
+            column += 2;
+        else if((b & 0xC0) != 0x80)
+            column++;
+    }
+
+    return column;
+}
+
+} // LineIndex
@@ -0,0 +1,960 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.util.*;
+import tal.Program.Instruction;
+import tal.Program.Op;
+
+/**
+ * Optimizations of the instructions of a program before it is assembled.
+ * @see Code#program()
+ */
+class Optimizer
+{
+// Superinstructions of the comparisons followed by IF, and of the
+// operators whose second operand is a constant.
+private static final Map<Op,Op> IF_COMPARISON = new EnumMap<>(Op.class),
+                                IF_CONSTANT   = new EnumMap<>(Op.class),
+                                CONSTANT      = new EnumMap<>(Op.class);
+static
+{
+    IF_COMPARISON.put(Op.LESS,      Op.IF_LESS);
+    IF_COMPARISON.put(Op.LESSEQ,    Op.IF_LESSEQ);
+    IF_COMPARISON.put(Op.GREATER,   Op.IF_GREATER);
+    IF_COMPARISON.put(Op.GREATEREQ, Op.IF_GREATEREQ);
+    IF_COMPARISON.put(Op.EQUAL,     Op.IF_EQUAL);
+    IF_COMPARISON.put(Op.UNEQUAL,   Op.IF_UNEQUAL);
+
+    IF_CONSTANT.put(Op.LESS,      Op.IF_LESS_K);
+    IF_CONSTANT.put(Op.LESSEQ,    Op.IF_LESSEQ_K);
+    IF_CONSTANT.put(Op.GREATER,   Op.IF_GREATER_K);
+    IF_CONSTANT.put(Op.GREATEREQ, Op.IF_GREATEREQ_K);
+    IF_CONSTANT.put(Op.EQUAL,     Op.IF_EQUAL_K);
+    IF_CONSTANT.put(Op.UNEQUAL,   Op.IF_UNEQUAL_K);
+
+    CONSTANT.put(Op.ADD,      Op.ADD_K);
+    CONSTANT.put(Op.SUBTRACT, Op.SUBTRACT_K);
+    CONSTANT.put(Op.MULTIPLY, Op.MULTIPLY_K);
+    CONSTANT.put(Op.DIVIDE,   Op.DIVIDE_K);
+}
+
+// Pairs of operations executed by the benchmark of RunBench and by the
+// first 2000 programs of OptimizerCheck, compiled with the other
+// optimizations but without fusing instructions. Each workload keeps
+// the pairs that are at least 1% of the pairs it executed. The rows
+// were generated offline with Program#profile, and must be measured
+// again when the passes change.
+private static final String PAIRS[] = {
+    // RunBench, 70000204 pairs.
+    "LOAD_INTEGER    INTEGER             12002244",
+    "ADD             STORE_INTEGER        6001108",
+    "IF              LOAD_INTEGER         6000000",
+    "STORE_INTEGER   LOAD_INTEGER         4001128",
+    "INTEGER         ADD                  4001108",
+    "STORE_INTEGER   GOTO                 3998892",
+    "GOTO            LOAD_INTEGER         3998892",
+    "LOAD_INTEGER    LOAD_INTEGER         3998892",
+    "INTEGER         LESS                 2000010",
+    "LESS            IF                   2000010",
+    "INTEGER         DIVIDE               2000000",
+    "INTEGER         GREATER              2000000",
+    "INTEGER         GREATEREQ            2000000",
+    "DIVIDE          ADD                  2000000",
+    "GREATER         OR_ELSE              2000000",
+    "GREATEREQ       IF                   2000000",
+    "LOAD_INTEGER    ADD                  1998892",
+    "LOAD_INTEGER    SUBTRACT             1998892",
+    "ADD             LOAD_INTEGER         1998892",
+    "SUBTRACT        STORE_INTEGER        1998892",
+    "OR_ELSE         IF                   1998884",
+    // OptimizerCheck, 179620 pairs.
+    "LOAD_INTEGER    INTEGER                22523",
+    "STORE_INTEGER   LOAD_INTEGER           16382",
+    "LESS            IF                      8310",
+    "INTEGER         LESS                    8187",
+    "INTEGER         MULTIPLY                7123",
+    "ADD             STORE_INTEGER           6578",
+    "IF              LOAD_INTEGER            6244",
+    "INTEGER         ADD                     5969",
+    "LOAD_INTEGER    LOAD_INTEGER            5429",
+    "INTEGER         STORE_INTEGER           5354",
+    "MULTIPLY        STORE_INTEGER           4940",
+    "LOAD_INTEGER    STORE_INTEGER           3842",
+    "STORE_INTEGER   GOTO                    3774",
+    "GOTO            LOAD_INTEGER            3708",
+    "IF              INTEGER                 3209",
+    "INTEGER         LOAD_INTEGER            2986",
+    "LOAD_INTEGER    MULTIPLY                2950",
+    "LOAD_INTEGER    NEGATE                  2472",
+    "STORE_INTEGER   INTEGER                 2432",
+    "INTEGER         DIVIDE                  2338",
+    "LOAD_INTEGER    ADD                     2327",
+    "STORE_STRING    LOAD_INTEGER            2095",
+    "LOAD_INTEGER    SUBTRACT                1949"
+};
+
+// Operations that follow each operation in a frequent pair.
+private static final Map<Op,Set<Op>> FREQUENT = new EnumMap<>(Op.class);
+static
+{
+    for(String p : PAIRS)
+    {
+        String f[] = p.split(" +");
+
+        FREQUENT.computeIfAbsent(Op.valueOf(f[0]),
+                                 k -> EnumSet.noneOf(Op.class))
+                .add(Op.valueOf(f[1]));
+    }
+}
+
+private final List<Instruction> m_code;
+private int m_integerSlots, m_stringSlots;
+
+/**
+ * Build an optimizer of a list of instructions.
+ * @param code         Instructions, that are modified
+ * @param integerSlots Number of integer variables
+ * @param stringSlots  Number of string variables
+ */
+Optimizer(List<Instruction> code, int integerSlots, int stringSlots)
+{
+    m_code         = code;
+    m_integerSlots = integerSlots;
+    m_stringSlots  = stringSlots;
+}
+
+/**
+ * Assemble the optimized instructions.
+ * @return compiled program
+ */
+Program program()
+{
+    return Program.assemble(m_code, m_integerSlots, m_stringSlots);
+}
+
+/**
+ * Compute the operations whose operands are constants.
+ * <p>The conditions of {@code if} and {@code while} that are constants
+ * are replaced by a jump when they are false, and removed when they are
+ * true, so {@link #peephole} removes the code that is never executed.
+ * The same is done with the first operand of {@code &&} and {@code ||}
+ * when it is a constant.
+ * The divisions by zero are not computed, so the error is thrown when
+ * the program is executed, as without optimizations.
+ */
+void fold()
+{
+    Set<Instruction> targets = targets(m_code);
+    Map<Instruction,Instruction> folded = new IdentityHashMap<>();
+    List<Instruction> result = new ArrayList<>(m_code.size());
+
+    for(Instruction c : m_code)
+    {
+        int n = c.op.pops, size = result.size();
+
+        if(n == 0 || n > size || targets.contains(c) ||
+           !constants(result.subList(size - n, size), targets))
+        {
+            result.add(c);
+            continue;
+        }
+
+        List<Instruction> operands = result.subList(size - n, size);
+        Instruction first = operands.get(0), f;
+
+        if(c.op == Op.IF)
+        {
+            // When the condition is true, the execution goes on
+            // with the following instruction.
+            if((Long)first.value != 0)
+            {
+                f = new Instruction(Op.NOP, 0, null, c.token);
+            }
+            else
+            {
+                f = new Instruction(Op.GOTO, 0, null, c.token);
+                f.target = c.target;
+            }
+        }
+        else if(c.op == Op.AND_THEN || c.op == Op.OR_ELSE)
+        {
+            // When the constant decides the result, it is kept
+            // and the second operand is not evaluated.
+            if(((Long)first.value != 0) == (c.op == Op.OR_ELSE))
+            {
+                f = new Instruction(Op.GOTO, 0, null, c.token);
+                f.target = c.target;
+                result.add(f);
+                continue;
+            }
+
+            f = new Instruction(Op.NOP, 0, null, c.token);
+        }
+        else
+        {
+            Object value = evaluate(c, operands);
+
+            if(value == null)
+            {
+                result.add(c);
+                continue;
+            }
+
+            f = new Instruction(value instanceof String ? Op.STRING
+                                                        : Op.INTEGER,
+                                0, value, first.token);
+        }
+
+        if(targets.contains(first))
+            targets.add(f);
+
+        folded.put(first, f);
+        operands.clear();
+        result.add(f);
+    }
+
+    for(Instruction i : result)
+    {
+        while(folded.containsKey(i.target))
+            i.target = folded.get(i.target);
+    }
+
+    m_code.clear();
+    m_code.addAll(result);
+}
+
+// The instructions push constants and they are not destinations of
+// jumps, except the first one.
+private static boolean constants(List<Instruction> operands,
+                                 Set<Instruction> targets)
+{
+    for(int i = 0; i < operands.size(); i++)
+    {
+        Instruction c = operands.get(i);
+
+        if((c.op != Op.INTEGER && c.op != Op.STRING) ||
+           (i > 0 && targets.contains(c)))
+        {
+            return false;
+        }
+    }
+
+    return true;
+}
+
+// Value of an operation with constant operands,
+// or null if it must be computed when the program is executed.
+private static Object evaluate(Instruction c, List<Instruction> operands)
+{
+    Object x = operands.get(0).value,
+           y = operands.size() > 1 ? operands.get(1).value : null;
+
+    switch(c.op)
+    {
+        case CONCAT:
+            return string(c.operand >> 2, x) + string(c.operand & 3, y);
+        case NEGATE:
+            return -(Long)x;
+        case NOT:
+            return bool((Long)x == 0);
+        default:
+            break;
+    }
+
+    if(!(x instanceof Long) || !(y instanceof Long))
+        return null;
+
+    long a = (Long)x, b = (Long)y;
+
+    switch(c.op)
+    {
+        case ADD:       return a + b;
+        case SUBTRACT:  return a - b;
+        case MULTIPLY:  return a * b;
+        case DIVIDE:    return b == 0 ? null : a / b;
+        case EQUAL:     return bool(a == b);
+        case UNEQUAL:   return bool(a != b);
+        case LESS:      return bool(a < b);
+        case LESSEQ:    return bool(a <= b);
+        case GREATER:   return bool(a > b);
+        case GREATEREQ: return bool(a >= b);
+        case OR:        return a | b;
+        case AND:       return a & b;
+        default:        return null;
+    }
+}
+
+// Constant converted to a string, as in CONCAT.
+private static String string(int type, Object value)
+{
+    if(type == Program.CONCAT_BOOLEAN)
+        return Boolean.toString((Long)value != 0);
+    else
+        return value.toString();
+}
+
+private static Long bool(boolean b)
+{
+    return b ? 1L : 0L;
+}
+
+/**
+ * Remove the operations that do nothing and the jumps that
+ * can be avoided.
+ * <p>The markers of the declarations, {@code else}, {@code while} and
+ * {@code end} are removed, and the jumps to them go to the following
+ * instruction. The jumps to a {@code GOTO} go to its final destination,
+ * the {@code GOTO} to the following instruction are removed, and so are
+ * the instructions after a {@code GOTO} that are not the destination
+ * of a jump, because they are never executed. The jumps of {@code &&}
+ * to the {@code IF} of a condition become that {@code IF}.
+ */
+void peephole()
+{
+    boolean changed;
+
+    do
+    {
+        threadJumps(m_code);
+        Set<Instruction> targets = targets(m_code),
+                         removed = set();
+        boolean reachable = true;
+
+        for(int i = 0; i < m_code.size(); i++)
+        {
+            Instruction c    = m_code.get(i),
+                        next = i + 1 < m_code.size() ? m_code.get(i + 1)
+                                                   : null;
+            reachable |= targets.contains(c);
+
+            if(!reachable || c.op == Op.NOP ||
+               (c.op == Op.GOTO && c.target == next))
+            {
+                removed.add(c);
+            }
+            else if(c.op == Op.GOTO)
+            {
+                reachable = false;
+            }
+        }
+
+        changed = !removed.isEmpty();
+        remove(m_code, removed);
+    }
+    while(changed);
+}
+
+// Change the destination of the jumps to a GOTO by its destination.
+private static void threadJumps(List<Instruction> code)
+{
+    for(Instruction i : code)
+    {
+        // The limit avoids infinite loops of jumps.
+        for(int n = 0; n < code.size() && i.target != null &&
+                       i.target.op == Op.GOTO; n++)
+        {
+            i.target = i.target.target;
+        }
+
+        // When the first operand of && is false, the condition of the
+        // IF is false, so it can jump directly taking the value.
+        if(i.op == Op.AND_THEN && i.target != null &&
+           i.target.op == Op.IF)
+        {
+            i.op     = Op.IF;
+            i.target = i.target.target;
+        }
+    }
+}
+
+// Remove instructions. The jumps to a removed instruction
+// go to the following instruction that is not removed.
+private static void remove(List<Instruction> code, Set<Instruction> removed)
+{
+    Map<Instruction,Instruction> following = new IdentityHashMap<>();
+    Instruction next = null;
+
+    for(int i = code.size() - 1; i >= 0; i--)
+    {
+        Instruction c = code.get(i);
+
+        if(removed.contains(c))
+            following.put(c, next);
+        else
+            next = c;
+    }
+
+    code.removeIf(removed::contains);
+
+    for(Instruction i : code)
+    {
+        if(following.containsKey(i.target))
+            i.target = following.get(i.target);
+    }
+}
+
+/**
+ * Optimize the {@code while} loops, from the inner ones.
+ * <p>A loop begins in the destination of a jump backwards, and ends
+ * in the last jump to its beginning. The expressions of the loop
+ * that only use constants and variables not assigned in the loop are
+ * computed once before the loop, and saved in hidden variables. The
+ * divisions are not moved, because they can throw an error.
+ * <p>A variable assigned only once in the loop, by {@code i = i + c}
+ * or {@code i = i - c} executed in every iteration, is an induction
+ * variable. Its multiplications by a constant or by an invariant
+ * variable are replaced by a hidden variable that is initialized
+ * before the loop and increased after {@code i}.
+ */
+void loops()
+{
+    Set<Instruction> done = set();
+
+    for(;;)
+    {
+        // The last jump to the beginning of each loop.
+        Map<Instruction,Integer> ends = new IdentityHashMap<>();
+
+        for(int i = 0; i < m_code.size(); i++)
+        {
+            Instruction c = m_code.get(i);
+
+            if(c.target != null && !done.contains(c.target) &&
+               m_code.indexOf(c.target) <= i)
+            {
+                ends.put(c.target, i);
+            }
+        }
+
+        if(ends.isEmpty())
+            return;
+
+        // The inner loops end before the outer ones.
+        // The beginning can change when it is moved before the loop.
+        Instruction jump = m_code.get(Collections.min(ends.values()));
+        loop(jump);
+        done.add(jump.target);
+    }
+}
+
+// Optimize the loop that ends in a jump.
+private void loop(Instruction jump)
+{
+    List<Instruction> before = new ArrayList<>();
+    hoist(jump, before);
+    reduce(jump, before);
+
+    if(before.isEmpty())
+        return;
+
+    // The jumps from outside the loop go to the new code before it.
+    Instruction header = jump.target;
+    int start = m_code.indexOf(header),
+        end   = m_code.indexOf(jump);
+
+    Set<Instruction> inside = set();
+    inside.addAll(m_code.subList(start, end + 1));
+
+    for(Instruction i : m_code)
+    {
+        if(i.target == header && !inside.contains(i))
+            i.target = before.get(0);
+    }
+
+    m_code.addAll(start, before);
+}
+
+// Move the invariant expressions of a loop to a list of instructions.
+private void hoist(Instruction jump, List<Instruction> before)
+{
+    int start = m_code.indexOf(jump.target),
+        end   = m_code.indexOf(jump);
+
+    boolean integers[] = new boolean[m_integerSlots],
+            strings[]  = new boolean[m_stringSlots];
+
+    for(Instruction c : m_code.subList(start, end + 1))
+    {
+        if(c.op == Op.STORE_INTEGER)
+            integers[c.operand] = true;
+        else if(c.op == Op.STORE_STRING)
+            strings[c.operand] = true;
+    }
+
+    // Values of the stack: indices of the first and the last
+    // instruction of their expressions, and 1 if they are invariant.
+    Set<Instruction> targets = targets(m_code);
+    LinkedList<int[]> stack = new LinkedList<>();
+    List<int[]> invariants = new ArrayList<>();
+
+    for(int k = start; k <= end; k++)
+    {
+        Instruction c = m_code.get(k);
+
+        // The jumps join values computed in different ways.
+        if(c.target != null || targets.contains(c))
+        {
+            for(int[] v : stack)
+                vary(v, invariants);
+        }
+
+        boolean invariant = invariant(c, integers, strings) &&
+                            (c.op.pops == 0 || !targets.contains(c));
+        List<int[]> operands = new ArrayList<>();
+        int first = k;
+
+        for(int i = 0; i < c.op.pops && !stack.isEmpty(); i++)
+        {
+            int v[] = stack.pop();
+            operands.add(v);
+            invariant &= v[2] == 1;
+            first = v[0];
+        }
+
+        invariant &= operands.size() == c.op.pops;
+
+        if(!invariant)
+        {
+            for(int[] v : operands)
+                vary(v, invariants);
+        }
+
+        for(int i = 0; i < c.op.pushes; i++)
+            stack.push(new int[] { first, k, invariant ? 1 : 0 });
+    }
+
+    for(int[] v : stack)
+        vary(v, invariants);
+
+    // From the last one, so the indices do not change.
+    invariants.sort((a, b) -> Integer.compare(b[0], a[0]));
+
+    for(int[] v : invariants)
+        before.addAll(0, hoist(v[0], v[1]));
+}
+
+// The value is not invariant. If it was invariant, and it is computed
+// by several instructions, its expression will be moved.
+private static void vary(int v[], List<int[]> invariants)
+{
+    if(v[2] == 1 && v[1] > v[0])
+        invariants.add(v);
+
+    v[2] = 0;
+}
+
+// The instruction does not depend on the loop: it does not read
+// variables assigned in the loop, jump, print nor throw an error.
+private static boolean invariant(Instruction c, boolean integers[],
+                                 boolean strings[])
+{
+    switch(c.op)
+    {
+        case LOAD_INTEGER:
+            return !integers[c.operand];
+        case LOAD_STRING:
+            return !strings[c.operand];
+        case INTEGER:
+        case STRING:
+        case ADD:
+        case CONCAT:
+        case SUBTRACT:
+        case NEGATE:
+        case MULTIPLY:
+        case EQUAL:
+        case UNEQUAL:
+        case LESS:
+        case LESSEQ:
+        case GREATER:
+        case GREATEREQ:
+        case NOT:
+        case OR:
+        case AND:
+            return true;
+        default:
+            return false;
+    }
+}
+
+// Replace an expression by a new hidden variable, and return
+// the instructions that assign the expression to the variable.
+private List<Instruction> hoist(int first, int last)
+{
+    List<Instruction> expression = m_code.subList(first, last + 1);
+    Instruction value = m_code.get(last);
+    boolean string = value.op == Op.CONCAT;
+    int slot = string ? m_stringSlots++ : m_integerSlots++;
+
+    Instruction load = new Instruction(
+        string ? Op.LOAD_STRING : Op.LOAD_INTEGER, slot, null, value.token);
+
+    List<Instruction> assignment = new ArrayList<>(expression);
+    assignment.add(new Instruction(
+        string ? Op.STORE_STRING : Op.STORE_INTEGER, slot, null,
+        value.token));
+
+    retarget(expression.get(0), load);
+    expression.clear();
+    expression.add(load);
+    return assignment;
+}
+
+// Replace the multiplications of the induction variables of a loop.
+private void reduce(Instruction jump, List<Instruction> before)
+{
+    int start = m_code.indexOf(jump.target),
+        end   = m_code.indexOf(jump),
+        stores[] = new int[m_integerSlots];
+
+    for(Instruction c : m_code.subList(start, end + 1))
+    {
+        if(c.op == Op.STORE_INTEGER)
+            stores[c.operand]++;
+    }
+
+    Set<Instruction> targets = targets(m_code);
+    List<Instruction> increments = new ArrayList<>();
+
+    for(int k = start; k + 3 < end; k++)
+    {
+        if(increment(k, targets) && stores[m_code.get(k).operand] == 1 &&
+           everyIteration(start, end, k, k + 3))
+        {
+            increments.add(m_code.get(k));
+        }
+    }
+
+    for(Instruction i : increments)
+        reduce(jump, i, stores, before);
+}
+
+// The instructions from an index are i = i + c or i = i - c.
+private boolean increment(int k, Set<Instruction> targets)
+{
+    Instruction load  = m_code.get(k),
+                store = m_code.get(k + 3);
+    Op op = m_code.get(k + 2).op;
+
+    return load.op == Op.LOAD_INTEGER &&
+           m_code.get(k + 1).op == Op.INTEGER &&
+           (op == Op.ADD || op == Op.SUBTRACT) &&
+           store.op == Op.STORE_INTEGER &&
+           store.operand == load.operand &&
+           !intersects(targets, m_code.subList(k + 1, k + 4));
+}
+
+// The instructions of a range are executed in every iteration of a
+// loop: no jump of the loop goes over them, and they are not in an
+// inner loop. The jumps outside the loop end it.
+private boolean everyIteration(int start, int end, int first, int last)
+{
+    for(int j = start; j < end; j++)
+    {
+        Instruction c = m_code.get(j);
+
+        if(c.target == null)
+            continue;
+
+        int t = m_code.indexOf(c.target);
+
+        if(t < start || t > end)
+            continue;
+        else if(t == start && j < first)
+            return false;
+        else if(t > j && j < first && t > first)
+            return false;
+        else if(t > start && t <= j && t <= first && j >= last)
+            return false;
+    }
+
+    return true;
+}
+
+// Replace the multiplications of an induction variable by a constant
+// or by an invariant variable with a hidden variable.
+private void reduce(Instruction jump, Instruction increment,
+                    int stores[], List<Instruction> before)
+{
+    int k = m_code.indexOf(increment);
+    long step = (Long)m_code.get(k + 1).value;
+    Op op = m_code.get(k + 2).op;
+    Instruction store = m_code.get(k + 3);
+    int variable = store.operand;
+
+    Set<Instruction> targets = targets(m_code);
+    Map<String,Integer> products = new HashMap<>();
+    List<Instruction> updates = new ArrayList<>();
+
+    for(int m = m_code.indexOf(jump.target) + 2;
+        m <= m_code.indexOf(jump); m++)
+    {
+        Instruction a = m_code.get(m - 2),
+                    b = m_code.get(m - 1),
+                    c = m_code.get(m);
+
+        if(c.op != Op.MULTIPLY ||
+           intersects(targets, m_code.subList(m - 1, m + 1)))
+        {
+            continue;
+        }
+
+        Instruction factor = load(a, variable) ? b :
+                             load(b, variable) ? a : null;
+
+        if(factor == null ||
+           (factor.op != Op.INTEGER &&
+            (factor.op != Op.LOAD_INTEGER ||
+             factor.operand >= stores.length ||
+             stores[factor.operand] > 0)))
+        {
+            continue;
+        }
+
+        String key = factor.op +" "+ (factor.op == Op.INTEGER ?
+                                      factor.value : factor.operand);
+        Integer slot = products.get(key);
+
+        if(slot == null)
+        {
+            slot = m_integerSlots++;
+            products.put(key, slot);
+
+            // Initial value before the loop.
+            before.add(instruction(Op.LOAD_INTEGER, variable, c));
+            before.add(copy(factor));
+            before.add(instruction(Op.MULTIPLY, 0, c));
+            before.add(instruction(Op.STORE_INTEGER, slot, c));
+
+            // Increase after the induction variable.
+            updates.add(instruction(Op.LOAD_INTEGER, slot, c));
+
+            if(factor.op == Op.INTEGER)
+            {
+                updates.add(new Instruction(Op.INTEGER, 0,
+                            step * (Long)factor.value, c.token));
+            }
+            else
+            {
+                int increase = m_integerSlots++;
+                before.add(copy(factor));
+                before.add(new Instruction(Op.INTEGER, 0, step, c.token));
+                before.add(instruction(Op.MULTIPLY, 0, c));
+                before.add(instruction(Op.STORE_INTEGER, increase, c));
+                updates.add(instruction(Op.LOAD_INTEGER, increase, c));
+            }
+
+            updates.add(instruction(op, 0, c));
+            updates.add(instruction(Op.STORE_INTEGER, slot, c));
+        }
+
+        Instruction load = instruction(Op.LOAD_INTEGER, slot, c);
+        retarget(a, load);
+
+        List<Instruction> product = m_code.subList(m - 2, m + 1);
+        product.clear();
+        product.add(load);
+        m -= 2;
+    }
+
+    m_code.addAll(m_code.indexOf(store) + 1, updates);
+}
+
+private static boolean load(Instruction c, int slot)
+{
+    return c.op == Op.LOAD_INTEGER && c.operand == slot;
+}
+
+private static Instruction instruction(Op op, int operand, Instruction c)
+{
+    return new Instruction(op, operand, null, c.token);
+}
+
+private static Instruction copy(Instruction c)
+{
+    return new Instruction(c.op, c.operand, c.value, c.token);
+}
+
+// Change the destination of the jumps to an instruction.
+private void retarget(Instruction from, Instruction to)
+{
+    for(Instruction i : m_code)
+    {
+        if(i.target == from)
+            i.target = to;
+    }
+}
+
+/**
+ * Replace the most frequent sequences of instructions by
+ * superinstructions, so each one is dispatched only once.
+ * <p>A sequence is fused only when every pair of consecutive operations
+ * in it is in the table of frequent pairs measured with
+ * {@link Program#profile}. With the passes that run before this one,
+ * the benchmark of {@link RunBench} executes LOAD_INTEGER INTEGER (12M),
+ * ADD STORE_INTEGER (6M), IF LOAD_INTEGER (6M),
+ * LOAD_INTEGER LOAD_INTEGER (4M), INTEGER ADD (4M), INTEGER LESS and
+ * LESS IF (2M each one), while the programs of {@link OptimizerCheck}
+ * also multiply by constants. So a subtraction of a constant, or a
+ * comparison other than LESS and GREATEREQ followed by IF, is not
+ * fused.
+ * <p>A sequence is not fused when an instruction after the first one
+ * is the destination of a jump.
+ */
+void fuse()
+{
+    Set<Instruction> targets = targets(m_code);
+    Map<Instruction,Instruction> fused = new IdentityHashMap<>();
+    List<Instruction> result = new ArrayList<>(m_code.size());
+
+    for(int i = 0; i < m_code.size();)
+    {
+        Instruction f = null;
+        int n = Math.min(4, m_code.size() - i);
+
+        for(; n > 1; n--)
+        {
+            List<Instruction> s = m_code.subList(i, i + n);
+
+            if(!intersects(targets, s.subList(1, n)) &&
+               (f = superinstruction(s)) != null)
+            {
+                break;
+            }
+        }
+
+        if(f == null)
+        {
+            result.add(m_code.get(i++));
+        }
+        else
+        {
+            fused.put(m_code.get(i), f);
+            result.add(f);
+            i += n;
+        }
+    }
+
+    for(Instruction i : result)
+    {
+        if(fused.containsKey(i.target))
+            i.target = fused.get(i.target);
+    }
+
+    m_code.clear();
+    m_code.addAll(result);
+}
+
+// Superinstruction of a sequence, or null if it cannot be fused.
+private static Instruction superinstruction(List<Instruction> s)
+{
+    for(int i = 1; i < s.size(); i++)
+    {
+        Set<Op> next = FREQUENT.get(s.get(i - 1).op);
+
+        if(next == null || !next.contains(s.get(i).op))
+            return null;
+    }
+
+    Instruction first = s.get(0),
+                last  = s.get(s.size() - 1);
+
+    switch(s.size())
+    {
+        case 4:
+            if(first.op == Op.LOAD_INTEGER && s.get(1).op == Op.INTEGER)
+            {
+                Op op = s.get(2).op;
+
+                // a OP k; IF
+                if(last.op == Op.IF && IF_CONSTANT.containsKey(op))
+                {
+                    Instruction f = new Instruction(IF_CONSTANT.get(op),
+                        first.operand, s.get(1).value, last.token);
+
+                    f.target = last.target;
+                    return f;
+                }
+
+                // a = a + k; a = a - k
+                if(last.op == Op.STORE_INTEGER &&
+                   last.operand == first.operand &&
+                   (op == Op.ADD || op == Op.SUBTRACT))
+                {
+                    long k = (Long)s.get(1).value;
+
+                    return new Instruction(Op.INCREMENT, first.operand,
+                                           op == Op.ADD ? k : -k,
+                                           last.token);
+                }
+            }
+            return null;
+
+        case 2:
+            // a OP b; IF
+            if(last.op == Op.IF && IF_COMPARISON.containsKey(first.op))
+            {
+                Instruction f = new Instruction(
+                    IF_COMPARISON.get(first.op), 0, null, last.token);
+
+                f.target = last.target;
+                return f;
+            }
+
+            // OP k
+            if(first.op == Op.INTEGER && CONSTANT.containsKey(last.op))
+            {
+                return new Instruction(CONSTANT.get(last.op), 0,
+                                       first.value, last.token);
+            }
+
+            if(first.op == Op.LOAD_INTEGER && last.op == Op.LOAD_INTEGER)
+            {
+                Instruction f = new Instruction(Op.LOAD_LOAD,
+                    first.operand, null, last.token);
+
+                f.operand2 = last.operand;
+                return f;
+            }
+            return null;
+
+        default:
+            return null;
+    }
+}
+
+// Destinations of the jumps.
+private static Set<Instruction> targets(List<Instruction> code)
+{
+    Set<Instruction> targets = set();
+
+    for(Instruction i : code)
+    {
+        if(i.target != null)
+            targets.add(i.target);
+    }
+
+    return targets;
+}
+
+// Set of instructions compared by identity.
+private static Set<Instruction> set()
+{
+    return Collections.newSetFromMap(new IdentityHashMap<>());
+}
+
+private static boolean intersects(Set<Instruction> targets,
+                                  List<Instruction> list)
+{
+    for(Instruction i : list)
+    {
+        if(targets.contains(i))
+            return true;
+    }
+
+    return false;
+}
+
+} // Optimizer
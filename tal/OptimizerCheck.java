@@ -0,0 +1,276 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Differential check of the optimizations.
+ * <p>It generates random programs, compiles each one with and without
+ * optimizations, and compares their output with every dispatch.
+ * The programs divide by zero, and have loops that run zero times,
+ * loops with invariant expressions, and products of their counters.
+ * @see Code#optimize(boolean)
+ */
+public class OptimizerCheck
+{
+private static final String DECLARATIONS =
+    "integer a\ninteger b\ninteger c\n"+
+    "integer c0\ninteger c1\ninteger c2\n"+
+    "string s\nstring t\n";
+
+private static final String INTEGERS[] = { "a", "b", "c" },
+                            STRINGS[]  = { "s", "t" },
+                            RELATIONS[] = { "<", "<=", ">", ">=",
+                                            "==", "!=" };
+private final Random m_random;
+private final StringBuilder m_text = new StringBuilder();
+private int m_depth;
+
+private OptimizerCheck(long seed)
+{
+    m_random = new Random(seed);
+}
+
+private int random(int bound)
+{
+    return m_random.nextInt(bound);
+}
+
+private String pick(String[] values)
+{
+    return values[random(values.length)];
+}
+
+private void line(String s)
+{
+    for(int i = 0; i < m_depth; i++)
+        m_text.append("    ");
+
+    m_text.append(s).append('\n');
+}
+
+// Program with random statements.
+private String program()
+{
+    m_text.append(DECLARATIONS);
+    block(8);
+    return m_text.toString();
+}
+
+private void block(int statements)
+{
+    int count = 1 + random(statements);
+
+    for(int i = 0; i < count; i++)
+        statement();
+}
+
+private void statement()
+{
+    switch(random(m_depth < 3 ? 7 : 4))
+    {
+        case 0:
+        case 1:
+            line(pick(INTEGERS) +" = "+ integer(3));
+            break;
+        case 2:
+            line(pick(STRINGS) +" = "+ string());
+            break;
+        case 3:
+            line("print "+ (random(3) == 0 ? string() : integer(3)));
+            break;
+        case 4:
+            line("if "+ condition(2));
+            m_depth++;
+            block(3);
+            m_depth--;
+
+            if(random(2) == 0)
+            {
+                line("else");
+                m_depth++;
+                block(3);
+                m_depth--;
+            }
+
+            line("end");
+            break;
+        default:
+            loop();
+    }
+}
+
+// Loop with a counter that only the loops assign, so it is small.
+// The initial value may be greater than the limit, so the loop runs
+// zero times.
+private void loop()
+{
+    String counter = "c"+ m_depth;
+    line(counter +" = "+ (m_depth > 0 && random(3) == 0 ?
+                          "c"+ random(m_depth) : ""+ random(8)));
+
+    // With && the loop always ends, even if the other operand is true.
+    String condition = counter +" < "+ random(8);
+
+    if(random(3) == 0)
+    {
+        String other = "("+ condition(1) +")";
+        condition = random(2) == 0 ? condition +" && "+ other
+                                   : other +" && "+ condition;
+    }
+
+    line("while "+ condition);
+    m_depth++;
+    block(4);
+    line(counter +" = "+ counter +" + "+ (1 + random(3)));
+    m_depth--;
+    line("end");
+}
+
+// Integer expression. A few divisors are zero or may be zero.
+private String integer(int depth)
+{
+    if(depth == 0 || random(3) == 0)
+    {
+        switch(random(4))
+        {
+            case 0:
+                return ""+ random(6);
+            case 1:
+                return m_depth > 0 ? "c"+ random(m_depth) : "0";
+            default:
+                return pick(INTEGERS);
+        }
+    }
+
+    switch(random(7))
+    {
+        case 0:
+            return integer(depth - 1) +" + "+ integer(depth - 1);
+        case 1:
+            return integer(depth - 1) +" - "+ integer(depth - 1);
+        case 2:
+            return integer(depth - 1) +" * "+ integer(depth - 1);
+        case 3:
+            return integer(depth - 1) +" / "+
+                   (random(4) == 0 ? integer(depth - 1) : 1 + random(5));
+        case 4:
+            return "(-"+ integer(depth - 1) +")";
+        case 5:
+            return "c"+ random(3) +" * "+ (1 + random(5));
+        default:
+            return "("+ integer(depth - 1) +")";
+    }
+}
+
+private String string()
+{
+    switch(random(3))
+    {
+        case 0:
+            return "\"x"+ random(3) +"\"";
+        case 1:
+            return pick(STRINGS);
+        default:
+            return pick(STRINGS) +" + ("+ integer(1) +")";
+    }
+}
+
+// Condition. The operands of && and || may divide by zero.
+private String condition(int depth)
+{
+    if(depth == 0 || random(3) == 0)
+        return integer(2) +" "+ pick(RELATIONS) +" "+ integer(2);
+
+    switch(random(3))
+    {
+        case 0:
+            return condition(depth - 1) +" && "+ condition(depth - 1);
+        case 1:
+            return condition(depth - 1) +" || "+ condition(depth - 1);
+        default:
+            return "!("+ condition(depth - 1) +")";
+    }
+}
+
+// Output of a program, followed by its error if it failed. Only the
+// class of the error is kept, because the virtual machine may omit
+// the message of the exceptions thrown very often.
+private static String output(Program program, Program.Dispatch dispatch)
+{
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(bytes);
+
+    try
+    {
+        program.run(out, dispatch);
+    }
+    catch(RuntimeException e)
+    {
+        out.println("Error: "+ e.getClass().getName());
+    }
+
+    out.flush();
+    return bytes.toString();
+}
+
+/**
+ * Run the check.
+ * @param args Optional number of generated programs.
+ * @throws IOException
+ */
+public static void main(String args[]) throws IOException
+{
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    LexGenerator generator = TalParser.generator();
+    int differences = 0, errors = 0;
+
+    for(int seed = 0; seed < count; seed++)
+    {
+        String text = new OptimizerCheck(seed).program();
+        TalParser parser = new TalParser(generator.lexer(Source.of(text)));
+        parser.program();
+        parser.close();
+
+        parser.codeOptimize(false);
+        Program plain = parser.codeProgram();
+        parser.codeOptimize(true);
+        Program optimized = parser.codeProgram();
+
+        String expected = output(plain, Program.Dispatch.SWITCH);
+
+        if(expected.contains("Error: "))
+            errors++;
+
+        for(Program.Dispatch d : Program.Dispatch.values())
+        {
+            String plainOutput = output(plain, d),
+                   optimizedOutput = output(optimized, d);
+
+            if(!plainOutput.equals(expected) ||
+               !optimizedOutput.equals(expected))
+            {
+                differences++;
+                System.out.println("Program "+ seed +", "+ d +":");
+                System.out.print(text);
+                System.out.println("Without optimizations:");
+                System.out.print(plainOutput);
+                System.out.println("Optimized:");
+                System.out.print(optimizedOutput);
+                break;
+            }
+        }
+    }
+
+    System.out.println(count +" programs, "+ errors +" with errors, "+
+                       differences +" differences");
+
+    if(differences > 0)
+        System.exit(1);
+}
+
+} // OptimizerCheck
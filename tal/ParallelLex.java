@@ -0,0 +1,183 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Lexical analysis of a large text using several threads.
+ * <p>The text is split in chunks at the beginning of lines, and each
+ * chunk is analysed by its own analyser in a fork-join pool.
+ * A chunk is accepted only if the previous one ended out of any token,
+ * for example, not inside a character string. Otherwise both chunks
+ * are analysed again as only one. So the result is the same as the
+ * sequential analysis, including the errors.
+ */
+public class ParallelLex
+{
+private static final int MIN_CHUNK = 1 << 16;
+
+private static class Chunk
+{
+    private final int start, end;
+    private int rows;
+    private ALex lex;
+    private TokenBuffer tokens;
+    private RuntimeException error;
+
+    private Chunk(int start, int end)
+    {
+        this.start = start;
+        this.end   = end;
+    }
+} // Chunk
+
+private final CharSequence m_text;
+private final Function<Source,? extends ALex> m_factory;
+
+private ParallelLex(CharSequence text, Function<Source,? extends ALex> factory)
+{
+    m_text = text;
+    m_factory = factory;
+}
+
+/**
+ * Read all the tokens of a text using the common fork-join pool.
+ * @param text    Text that must be analysed
+ * @param factory Function to build an analyser for a source,
+ *                for example {@code DFA::new}
+ * @return tokens of the text
+ */
+public static TokenBuffer tokenize(
+    CharSequence text, Function<Source,? extends ALex> factory)
+{
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    return tokenize(text, factory, pool, pool.getParallelism() * 4);
+}
+
+/**
+ * Read all the tokens of a text.
+ * @param text    Text that must be analysed
+ * @param factory Function to build an analyser for a source,
+ *                for example {@code DFA::new}
+ * @param pool    Pool where the chunks will be analysed
+ * @param chunks  Maximum number of chunks
+ * @return tokens of the text
+ */
+public static TokenBuffer tokenize(
+    CharSequence text, Function<Source,? extends ALex> factory,
+    ForkJoinPool pool, int chunks)
+{
+    return new ParallelLex(text, factory).tokenize(pool, chunks);
+}
+
+private TokenBuffer tokenize(ForkJoinPool pool, int chunks)
+{
+    List<Chunk> list = split(chunks);
+    List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+
+    for(Chunk c : list)
+        tasks.add(pool.submit(() -> analyse(c)));
+
+    TokenBuffer result = new TokenBuffer(m_text, 0, new LineIndex(0, 1),
+                                         new Symbols());
+    int rows = 0, i = 0;
+    Chunk c = tasks.get(0).join();
+
+    for(;;)
+    {
+        boolean last = c.end == m_text.length();
+
+        if(!last && (c.error != null ? c.lex.offset() == c.end
+                                     : !c.lex.endsAtStart()))
+        {
+            // The chunk ends inside a token.
+            Chunk next = tasks.get(++i).join();
+            c = analyse(new Chunk(c.start, next.end));
+            continue;
+        }
+
+        if(c.error != null)
+        {
+            // Analyse the chunk again to get the right row in the error.
+            ALex lex = m_factory.apply(Source.of(m_text, c.start, c.end));
+            lex.setOrigin(c.start, rows + 1);
+            tokenize(lex);
+            throw c.error;
+        }
+
+        result.append(c.tokens, c.tokens.size() - (last ? 0 : 1));
+
+        if(last)
+            return result;
+
+        rows += c.rows;
+        c = tasks.get(++i).join();
+    }
+}
+
+private List<Chunk> split(int chunks)
+{
+    int length = m_text.length();
+    chunks = Math.max(1, Math.min(chunks, length / MIN_CHUNK));
+    List<Chunk> list = new ArrayList<>();
+    int start = 0;
+
+    for(int i = 1; i < chunks; i++)
+    {
+        int end = (int)((long)length * i / chunks);
+
+        if(end < start)
+            continue;
+
+        while(end < length && m_text.charAt(end) != '\n')
+            end++;
+
+        if(end >= length - 1)
+            break;
+
+        // The chunk ends after the line break.
+        list.add(new Chunk(start, ++end));
+        start = end;
+    }
+
+    list.add(new Chunk(start, length));
+    return list;
+}
+
+private Chunk analyse(Chunk c)
+{
+    c.lex = m_factory.apply(Source.of(m_text, c.start, c.end));
+    c.lex.setOrigin(c.start, 1);
+
+    try
+    {
+        c.tokens = tokenize(c.lex);
+    }
+    catch(RuntimeException ex)
+    {
+        c.error = ex;
+    }
+
+    c.rows = c.lex.lines().size() - 1;
+    return c;
+}
+
+private static TokenBuffer tokenize(ALex lex)
+{
+    try
+    {
+        return lex.tokenize();
+    }
+    catch(IOException ex)
+    {
+        throw new UncheckedIOException(ex);
+    }
+}
+
+} // ParallelLex
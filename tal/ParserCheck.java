@@ -0,0 +1,211 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.util.*;
+import static tal.Token.Type.*;
+
+/**
+ * Check of the analysis of expressions.
+ * <p>It analyses valid and malformed programs with
+ * {@link ASyn#expression()} and with the recursive productions that
+ * it replaces, and compares the generated code or the error messages.
+ */
+public class ParserCheck
+{
+/**
+ * Analyser of expressions with recursive productions.
+ */
+private static class Recursive extends TalParser
+{
+private Recursive(ALex lex)
+{
+    super(lex);
+}
+
+// expr -> and (OR and)*
+@Override public void expression()
+{
+    and();
+
+    while(tokenType() == OR)
+        operator(OR, this::and);
+}
+
+// and -> not (AND not)*
+private void and()
+{
+    not();
+
+    while(tokenType() == AND)
+        operator(AND, this::not);
+}
+
+// not -> NEG not | rel
+private void not()
+{
+    if(tokenType() == NEG)
+        operator(NEG, this::not);
+    else
+        rel();
+}
+
+// rel -> sum (REL sum)?
+private void rel()
+{
+    sum();
+
+    if(tokenType() == REL)
+        operator(REL, this::sum);
+}
+
+// sum -> SUM? mul (SUM mul)*
+private void sum()
+{
+    if(tokenType() == SUM)
+    {
+        boolean negate = tokenName().equals("-");
+        tokenRead(SUM);
+        mul();
+
+        if(negate)
+            codeOperator("-1");
+    }
+    else
+    {
+        mul();
+    }
+
+    while(tokenType() == SUM)
+        operator(SUM, this::mul);
+}
+
+// mul -> unit (MUL unit)*
+private void mul()
+{
+    unit();
+
+    while(tokenType() == MUL)
+        operator(MUL, this::unit);
+}
+
+// unit -> LPAR expr RPAR | ID | INTVAL | STRVAL
+private void unit()
+{
+    switch(tokenType())
+    {
+        case LPAR:
+            tokenRead(LPAR);
+            expression();
+            tokenRead(RPAR);
+            break;
+        case ID:
+            tokenRead(ID);
+            codeVariableExpression();
+            break;
+        case STRVAL:
+            tokenRead(STRVAL);
+            codeString();
+            break;
+        default:
+            tokenRead(INTVAL);
+            codeInteger();
+    }
+}
+
+// Read an operator, analyse its operand and generate its code.
+private void operator(Token.Type type, Runnable operand)
+{
+    String name = tokenName();
+    tokenRead(type);
+    operand.run();
+    codeOperator(name);
+}
+
+} // Recursive
+
+private static final String
+    DECLARATIONS = "integer a\ninteger b\nstring s\n",
+    TOKENS[] = { "a", "b", "1", "2", "\"x\"", "s", "+", "-", "*", "/",
+                 "<", "==", ">=", "!=", "!", "&&", "||", "(", ")" };
+
+// Generated code, or the error message of the analysis.
+private static String analyse(TalParser parser)
+{
+    try
+    {
+        parser.program();
+        return parser.codeGet();
+    }
+    catch(RuntimeException e)
+    {
+        return e.getMessage();
+    }
+}
+
+// Random sequence of tokens, often malformed.
+private static String expression(Random random)
+{
+    StringBuilder s = new StringBuilder();
+    int length = 1 + random.nextInt(12);
+
+    for(int i = 0; i < length; i++)
+        s.append(' ').append(TOKENS[random.nextInt(TOKENS.length)]);
+
+    return s.toString();
+}
+
+/**
+ * Run the check.
+ * @param args Optional number of generated expressions.
+ */
+public static void main(String args[])
+{
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    List<String> expressions = new ArrayList<>(Arrays.asList(
+        "(a < 2) && a < 3 == (a < 4)",
+        "a < 2 && a < 3",
+        "a < 2 < 3",
+        "!a < 2 || b == 1 && !!(a)",
+        "-a * 2 + b < -(b - 1) / 2",
+        "a + -b",
+        "s + a + \"x\" == s",
+        "((a)",
+        "a)",
+        ""));
+
+    Random random = new Random(1);
+
+    for(int i = 0; i < count; i++)
+        expressions.add(expression(random));
+
+    LexGenerator generator = TalParser.generator();
+    int differences = 0;
+
+    for(String e : expressions)
+    {
+        String text = DECLARATIONS +"print "+ e +"\n";
+        String iterative = analyse(
+                   new TalParser(generator.lexer(Source.of(text)))),
+               recursive = analyse(
+                   new Recursive(generator.lexer(Source.of(text))));
+
+        if(!iterative.equals(recursive))
+        {
+            differences++;
+            System.out.println("print "+ e.trim());
+            System.out.println("    expression(): "+ iterative);
+            System.out.println("    recursive:    "+ recursive);
+        }
+    }
+
+    System.out.println(expressions.size() +" expressions, "+
+                       differences +" differences");
+
+    if(differences > 0)
+        System.exit(1);
+}
+
+} // ParserCheck
@@ -0,0 +1,880 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compiled code of a program.
+ * <p>A program is immutable, so it can be executed many times, even by
+ * several threads at the same time. The execution stack and the values
+ * of the variables are kept in a new execution context for each run.
+ * @see Code#program()
+ */
+public class Program
+{
+// Operations of the compiled code, with the operands that follow
+// them in the code: 's' is a slot of a variable or another number,
+// 'k' is the index of a constant and 'j' is the destination of a jump.
+// The numbers are the values that they take from the stack and put in
+// it. The types of the values are checked when the code is generated,
+// so the operations do not check them.
+static enum Op
+{
+    NOP           ("",    0, 0),
+    STORE_INTEGER ("s",   1, 0),
+    STORE_STRING  ("s",   1, 0),
+    PRINT_INTEGER ("",    1, 0),
+    PRINT_BOOLEAN ("",    1, 0),
+    PRINT_STRING  ("",    1, 0),
+    IF            ("j",   1, 0),
+    GOTO          ("j",   0, 0),
+    LOAD_INTEGER  ("s",   0, 1),
+    LOAD_STRING   ("s",   0, 1),
+    INTEGER       ("k",   0, 1),
+    STRING        ("k",   0, 1),
+    ADD           ("",    2, 1),
+    CONCAT        ("s",   2, 1),
+    SUBTRACT      ("",    2, 1),
+    NEGATE        ("",    1, 1),
+    MULTIPLY      ("",    2, 1),
+    DIVIDE        ("",    2, 1),
+    EQUAL         ("",    2, 1),
+    UNEQUAL       ("",    2, 1),
+    LESS          ("",    2, 1),
+    LESSEQ        ("",    2, 1),
+    GREATER       ("",    2, 1),
+    GREATEREQ     ("",    2, 1),
+    NOT           ("",    1, 1),
+    OR            ("",    2, 1),
+    AND           ("",    2, 1),
+
+    // Jumps of && and ||, keeping the value that decides the result.
+    AND_THEN      ("j",   1, 0),
+    OR_ELSE       ("j",   1, 0),
+
+    // Superinstructions: see Optimizer.fuse.
+    INCREMENT     ("sk",  0, 0),
+    ADD_K         ("k",   1, 1),
+    SUBTRACT_K    ("k",   1, 1),
+    MULTIPLY_K    ("k",   1, 1),
+    DIVIDE_K      ("k",   1, 1),
+    LOAD_LOAD     ("ss",  0, 2),
+    IF_LESS       ("j",   2, 0),
+    IF_LESSEQ     ("j",   2, 0),
+    IF_GREATER    ("j",   2, 0),
+    IF_GREATEREQ  ("j",   2, 0),
+    IF_EQUAL      ("j",   2, 0),
+    IF_UNEQUAL    ("j",   2, 0),
+    IF_LESS_K     ("skj", 0, 0),
+    IF_LESSEQ_K   ("skj", 0, 0),
+    IF_GREATER_K  ("skj", 0, 0),
+    IF_GREATEREQ_K("skj", 0, 0),
+    IF_EQUAL_K    ("skj", 0, 0),
+    IF_UNEQUAL_K  ("skj", 0, 0);
+
+    final String operands;
+    final int pops, pushes;
+
+    private Op(String operands, int pops, int pushes)
+    {
+        this.operands = operands;
+        this.pops     = pops;
+        this.pushes   = pushes;
+    }
+} // Op
+
+/**
+ * Operation of the code before assigning the offsets,
+ * so the optimizations can insert and remove operations.
+ */
+static class Instruction
+{
+    Op op;
+    // Slot, or types of the operands of CONCAT.
+    int operand, operand2;
+    // Constant: Long or String.
+    Object value;
+    // Destination of a jump, or null for the end of the code.
+    Instruction target;
+    // Token to locate the errors.
+    final Token token;
+
+    Instruction(Op op, int operand, Object value, Token token)
+    {
+        this.op      = op;
+        this.operand = operand;
+        this.value   = value;
+        this.token   = token;
+    }
+} // Instruction
+
+/**
+ * Ways to dispatch the operations when a program is executed.
+ * <p>In {@code RunBench}, the switch was the fastest on HotSpot,
+ * because the handlers are inlined in the loop, so it is the default.
+ * @see Program#run(PrintStream, Dispatch)
+ */
+public static enum Dispatch
+{
+    /** Table of handlers indexed by the ordinal of each operation. */
+    TABLE,
+
+    /** Handler of each operation stored with the code. */
+    DIRECT,
+
+    /** Loop with a switch over the ordinals of the operations. */
+    SWITCH
+}
+
+// Types of the operands of CONCAT: the operand of the operation
+// is the type of the first value shifted 2 bits plus the second one.
+static final int CONCAT_INTEGER = 0,
+                 CONCAT_BOOLEAN = 1,
+                 CONCAT_STRING  = 2;
+
+private final int m_code[];
+private final Token m_source[];
+private final long m_integers[];
+private final String m_strings[];
+private final int m_maxStack, m_integerSlots, m_stringSlots;
+
+// Handler of the operation at each offset of the code.
+private final Handler m_handlers[];
+
+/**
+ * Build a compiled program.
+ * @param code         Ordinal of each operation followed by its operands
+ * @param source       Token of each operation, to locate the errors
+ * @param integers     Integer constants
+ * @param strings      String constants
+ * @param maxStack     Maximum size of the execution stack
+ * @param integerSlots Number of integer variables
+ * @param stringSlots  Number of string variables
+ */
+Program(int code[], Token source[], long integers[], String strings[],
+        int maxStack, int integerSlots, int stringSlots)
+{
+    m_code         = code;
+    m_source       = source;
+    m_integers     = integers;
+    m_strings      = strings;
+    m_maxStack     = maxStack;
+    m_integerSlots = integerSlots;
+    m_stringSlots  = stringSlots;
+    m_handlers     = new Handler[code.length];
+
+    for(int pc = 0; pc < code.length;)
+    {
+        m_handlers[pc] = RUN[code[pc]];
+        pc += 1 + OPS[code[pc]].operands.length();
+    }
+}
+
+/**
+ * Assemble a list of instructions.
+ * @param list         Instructions
+ * @param integerSlots Number of integer variables
+ * @param stringSlots  Number of string variables
+ * @return compiled program
+ */
+static Program assemble(List<Instruction> list,
+                        int integerSlots, int stringSlots)
+{
+    Map<Instruction,Integer> pcs = new IdentityHashMap<>();
+    int size = 0;
+
+    // The code of ASyn leaves the stack empty after each statement,
+    // so the jumps do not change the size of the stack.
+    int stack = 0, maxStack = 0;
+
+    for(Instruction i : list)
+    {
+        pcs.put(i, size);
+        size += 1 + i.op.operands.length();
+        stack += i.op.pushes - i.op.pops;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    int   code[]   = new int[size];
+    Token source[] = new Token[size];
+    Map<Object,Integer> integers = new HashMap<>(),
+                        strings  = new HashMap<>();
+    int pc = 0;
+
+    for(Instruction i : list)
+    {
+        source[pc] = i.token;
+        code[pc++] = i.op.ordinal();
+        int slots  = 0;
+
+        for(char c : i.op.operands.toCharArray())
+        {
+            switch(c)
+            {
+                case 's':
+                    code[pc++] = slots++ == 0 ? i.operand : i.operand2;
+                    break;
+                case 'k':
+                    code[pc++] = constant(i.op == Op.STRING ? strings
+                                                            : integers,
+                                          i.value);
+                    break;
+                case 'j':
+                    code[pc++] = i.target == null ? size
+                                                  : pcs.get(i.target);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+    }
+
+    long   enteros[] = new long[integers.size()];
+    String cadenas[] = new String[strings.size()];
+
+    for(Map.Entry<Object,Integer> e : integers.entrySet())
+        enteros[e.getValue()] = (Long)e.getKey();
+
+    for(Map.Entry<Object,Integer> e : strings.entrySet())
+        cadenas[e.getValue()] = (String)e.getKey();
+
+    return new Program(code, source, enteros, cadenas, maxStack,
+                       integerSlots, stringSlots);
+}
+
+// Index of a value in a table of constants.
+private static int constant(Map<Object,Integer> table, Object value)
+{
+    Integer index = table.get(value);
+
+    if(index == null)
+    {
+        index = table.size();
+        table.put(value, index);
+    }
+
+    return index;
+}
+
+/**
+ * Execute the program printing to the standard output.
+ */
+public void run()
+{
+    run(System.out);
+}
+
+/**
+ * Execute the program.
+ * @param out Stream where the program prints
+ */
+public void run(PrintStream out)
+{
+    run(out, Dispatch.SWITCH);
+}
+
+/**
+ * Execute the program with a way of dispatching the operations.
+ * @param out      Stream where the program prints
+ * @param dispatch Way of dispatching the operations
+ */
+public void run(PrintStream out, Dispatch dispatch)
+{
+    new Execution(out).run(dispatch);
+}
+
+/**
+ * Execute the program counting the consecutive pairs of operations.
+ * The most frequent pairs are the candidates to be fused in
+ * superinstructions.
+ * @param out Stream where the program prints
+ * @return pairs of operations with the times they were executed,
+ *         from the most frequent
+ */
+public String profile(PrintStream out)
+{
+    long pairs[][] = new long[OPS.length][OPS.length];
+    new Execution(out).profile(pairs);
+
+    List<long[]> list = new ArrayList<>();
+
+    for(int i = 0; i < OPS.length; i++)
+    {
+        for(int j = 0; j < OPS.length; j++)
+        {
+            if(pairs[i][j] > 0)
+                list.add(new long[] { pairs[i][j], i, j });
+        }
+    }
+
+    list.sort((a, b) -> Long.compare(b[0], a[0]));
+    StringBuilder s = new StringBuilder();
+
+    for(long p[] : list)
+    {
+        s.append(String.format("%-15s %-15s %12d\n",
+                 OPS[(int)p[1]], OPS[(int)p[2]], p[0]));
+    }
+
+    return s.toString();
+}
+
+private interface Handler
+{
+    int run(Execution e, int pc);
+}
+
+private static final Op OPS[] = Op.values();
+
+// Handlers of the operations, by their ordinals.
+private static final Handler RUN[] = handlers();
+
+private static Handler[] handlers()
+{
+    Handler run[] = new Handler[OPS.length];
+    run[Op.NOP.ordinal()]            = Execution::runNext;
+    run[Op.STORE_INTEGER.ordinal()]  = Execution::runStoreInteger;
+    run[Op.STORE_STRING.ordinal()]   = Execution::runStoreString;
+    run[Op.PRINT_INTEGER.ordinal()]  = Execution::runPrintInteger;
+    run[Op.PRINT_BOOLEAN.ordinal()]  = Execution::runPrintBoolean;
+    run[Op.PRINT_STRING.ordinal()]   = Execution::runPrintString;
+    run[Op.IF.ordinal()]             = Execution::runIf;
+    run[Op.GOTO.ordinal()]           = Execution::runGoto;
+    run[Op.LOAD_INTEGER.ordinal()]   = Execution::runLoadInteger;
+    run[Op.LOAD_STRING.ordinal()]    = Execution::runLoadString;
+    run[Op.INTEGER.ordinal()]        = Execution::runInteger;
+    run[Op.STRING.ordinal()]         = Execution::runString;
+    run[Op.ADD.ordinal()]            = Execution::runAdd;
+    run[Op.CONCAT.ordinal()]         = Execution::runConcat;
+    run[Op.SUBTRACT.ordinal()]       = Execution::runSubtract;
+    run[Op.NEGATE.ordinal()]         = Execution::runNegate;
+    run[Op.MULTIPLY.ordinal()]       = Execution::runMultiply;
+    run[Op.DIVIDE.ordinal()]         = Execution::runDivide;
+    run[Op.EQUAL.ordinal()]          = Execution::runEqual;
+    run[Op.UNEQUAL.ordinal()]        = Execution::runUnequal;
+    run[Op.LESS.ordinal()]           = Execution::runLess;
+    run[Op.LESSEQ.ordinal()]         = Execution::runLessEq;
+    run[Op.GREATER.ordinal()]        = Execution::runGreater;
+    run[Op.GREATEREQ.ordinal()]      = Execution::runGreaterEq;
+    run[Op.NOT.ordinal()]            = Execution::runNot;
+    run[Op.OR.ordinal()]             = Execution::runOr;
+    run[Op.AND.ordinal()]            = Execution::runAnd;
+    run[Op.AND_THEN.ordinal()]       = Execution::runAndThen;
+    run[Op.OR_ELSE.ordinal()]        = Execution::runOrElse;
+    run[Op.INCREMENT.ordinal()]      = Execution::runIncrement;
+    run[Op.ADD_K.ordinal()]          = Execution::runAddK;
+    run[Op.SUBTRACT_K.ordinal()]     = Execution::runSubtractK;
+    run[Op.MULTIPLY_K.ordinal()]     = Execution::runMultiplyK;
+    run[Op.DIVIDE_K.ordinal()]       = Execution::runDivideK;
+    run[Op.LOAD_LOAD.ordinal()]      = Execution::runLoadLoad;
+    run[Op.IF_LESS.ordinal()]        = Execution::runIfLess;
+    run[Op.IF_LESSEQ.ordinal()]      = Execution::runIfLessEq;
+    run[Op.IF_GREATER.ordinal()]     = Execution::runIfGreater;
+    run[Op.IF_GREATEREQ.ordinal()]   = Execution::runIfGreaterEq;
+    run[Op.IF_EQUAL.ordinal()]       = Execution::runIfEqual;
+    run[Op.IF_UNEQUAL.ordinal()]     = Execution::runIfUnequal;
+    run[Op.IF_LESS_K.ordinal()]      = Execution::runIfLessK;
+    run[Op.IF_LESSEQ_K.ordinal()]    = Execution::runIfLessEqK;
+    run[Op.IF_GREATER_K.ordinal()]   = Execution::runIfGreaterK;
+    run[Op.IF_GREATEREQ_K.ordinal()] = Execution::runIfGreaterEqK;
+    run[Op.IF_EQUAL_K.ordinal()]     = Execution::runIfEqualK;
+    run[Op.IF_UNEQUAL_K.ordinal()]   = Execution::runIfUnequalK;
+    return run;
+}
+
+// Execution context of a run.
+private class Execution
+{
+    private final PrintStream m_out;
+
+    // Execution stack: integers and booleans (0 or 1) are
+    // in m_valores, and strings in m_objetos.
+    private int m_pila;
+    private final long m_valores[] = new long[m_maxStack];
+    private final Object m_objetos[] = new Object[m_maxStack];
+
+    // Frame with the values of the variables, by their slots.
+    private final long m_enteros[] = new long[m_integerSlots];
+    private final String m_cadenas[] = new String[m_stringSlots];
+
+    private Execution(PrintStream out)
+    {
+        m_out = out;
+        Arrays.fill(m_cadenas, "");
+    }
+
+    private void run(Dispatch dispatch)
+    {
+        switch(dispatch)
+        {
+            case TABLE:  runTable();  break;
+            case DIRECT: runDirect(); break;
+            case SWITCH: runSwitch(); break;
+            default:     throw new AssertionError();
+        }
+    }
+
+    private void runTable()
+    {
+        int pc = 0;
+
+        try
+        {
+            while(pc < m_code.length)
+                pc = RUN[m_code[pc]].run(this, pc);
+        }
+        catch(ArithmeticException ex)
+        {
+            throw error(ex, pc);
+        }
+    }
+
+    private void runDirect()
+    {
+        int pc = 0;
+
+        try
+        {
+            while(pc < m_code.length)
+                pc = m_handlers[pc].run(this, pc);
+        }
+        catch(ArithmeticException ex)
+        {
+            throw error(ex, pc);
+        }
+    }
+
+    private void profile(long pairs[][])
+    {
+        int pc = 0, previous = Op.NOP.ordinal();
+
+        try
+        {
+            while(pc < m_code.length)
+            {
+                int op = m_code[pc];
+                pairs[previous][op]++;
+                previous = op;
+                pc = RUN[op].run(this, pc);
+            }
+        }
+        catch(ArithmeticException ex)
+        {
+            throw error(ex, pc);
+        }
+    }
+
+    private ArithmeticException error(ArithmeticException ex, int pc)
+    {
+        return new ArithmeticException(
+            ex.getMessage() +" in "+ m_source[pc].row() +"."+
+            m_source[pc].column());
+    }
+
+    // Value of the stack converted to a string.
+    private String string(int tipo, int i)
+    {
+        switch(tipo)
+        {
+            case CONCAT_INTEGER: return Long.toString(m_valores[i]);
+            case CONCAT_BOOLEAN: return Boolean.toString(m_valores[i] != 0);
+            default:             return (String)m_objetos[i];
+        }
+    }
+
+    private int runNext(int pc)
+    {
+        return pc + 1;
+    }
+
+    private int runStoreInteger(int pc)
+    {
+        m_enteros[m_code[pc + 1]] = m_valores[--m_pila];
+        return pc + 2;
+    }
+
+    private int runStoreString(int pc)
+    {
+        m_cadenas[m_code[pc + 1]] = (String)m_objetos[--m_pila];
+        return pc + 2;
+    }
+
+    private int runPrintInteger(int pc)
+    {
+        m_out.println(m_valores[--m_pila]);
+        return pc + 1;
+    }
+
+    private int runPrintBoolean(int pc)
+    {
+        m_out.println(m_valores[--m_pila] != 0);
+        return pc + 1;
+    }
+
+    private int runPrintString(int pc)
+    {
+        m_out.println(m_objetos[--m_pila]);
+        return pc + 1;
+    }
+
+    private int runIf(int pc)
+    {
+        return m_valores[--m_pila] != 0 ? pc + 2 : m_code[pc + 1];
+    }
+
+    private int runGoto(int pc)
+    {
+        return m_code[pc + 1];
+    }
+
+    private int runLoadInteger(int pc)
+    {
+        m_valores[m_pila++] = m_enteros[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runLoadString(int pc)
+    {
+        m_objetos[m_pila++] = m_cadenas[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runInteger(int pc)
+    {
+        m_valores[m_pila++] = m_integers[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runString(int pc)
+    {
+        m_objetos[m_pila++] = m_strings[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runAdd(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] += m_valores[m_pila];
+        return pc + 1;
+    }
+
+    private int runConcat(int pc)
+    {
+        int tipos = m_code[pc + 1];
+        m_pila--;
+
+        m_objetos[m_pila - 1] = string(tipos >> 2, m_pila - 1) +
+                                string(tipos & 3, m_pila);
+        return pc + 2;
+    }
+
+    private int runSubtract(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] -= m_valores[m_pila];
+        return pc + 1;
+    }
+
+    private int runNegate(int pc)
+    {
+        m_valores[m_pila - 1] = -m_valores[m_pila - 1];
+        return pc + 1;
+    }
+
+    private int runMultiply(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] *= m_valores[m_pila];
+        return pc + 1;
+    }
+
+    private int runDivide(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] /= m_valores[m_pila];
+        return pc + 1;
+    }
+
+    private int runEqual(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] =
+            bool(m_valores[m_pila - 1] == m_valores[m_pila]);
+        return pc + 1;
+    }
+
+    private int runUnequal(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] =
+            bool(m_valores[m_pila - 1] != m_valores[m_pila]);
+        return pc + 1;
+    }
+
+    private int runLess(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] =
+            bool(m_valores[m_pila - 1] < m_valores[m_pila]);
+        return pc + 1;
+    }
+
+    private int runLessEq(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] =
+            bool(m_valores[m_pila - 1] <= m_valores[m_pila]);
+        return pc + 1;
+    }
+
+    private int runGreater(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] =
+            bool(m_valores[m_pila - 1] > m_valores[m_pila]);
+        return pc + 1;
+    }
+
+    private int runGreaterEq(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] =
+            bool(m_valores[m_pila - 1] >= m_valores[m_pila]);
+        return pc + 1;
+    }
+
+    private int runNot(int pc)
+    {
+        m_valores[m_pila - 1] ^= 1;
+        return pc + 1;
+    }
+
+    private int runOr(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] |= m_valores[m_pila];
+        return pc + 1;
+    }
+
+    private int runAnd(int pc)
+    {
+        m_pila--;
+        m_valores[m_pila - 1] &= m_valores[m_pila];
+        return pc + 1;
+    }
+
+    private int runAndThen(int pc)
+    {
+        if(m_valores[m_pila - 1] == 0)
+            return m_code[pc + 1];
+
+        m_pila--;
+        return pc + 2;
+    }
+
+    private int runOrElse(int pc)
+    {
+        if(m_valores[m_pila - 1] != 0)
+            return m_code[pc + 1];
+
+        m_pila--;
+        return pc + 2;
+    }
+
+    private int runIncrement(int pc)
+    {
+        m_enteros[m_code[pc + 1]] += m_integers[m_code[pc + 2]];
+        return pc + 3;
+    }
+
+    private int runAddK(int pc)
+    {
+        m_valores[m_pila - 1] += m_integers[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runSubtractK(int pc)
+    {
+        m_valores[m_pila - 1] -= m_integers[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runMultiplyK(int pc)
+    {
+        m_valores[m_pila - 1] *= m_integers[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runDivideK(int pc)
+    {
+        m_valores[m_pila - 1] /= m_integers[m_code[pc + 1]];
+        return pc + 2;
+    }
+
+    private int runLoadLoad(int pc)
+    {
+        m_valores[m_pila]     = m_enteros[m_code[pc + 1]];
+        m_valores[m_pila + 1] = m_enteros[m_code[pc + 2]];
+        m_pila += 2;
+        return pc + 3;
+    }
+
+    private int runIfLess(int pc)
+    {
+        m_pila -= 2;
+        return m_valores[m_pila] < m_valores[m_pila + 1] ? pc + 2
+                                                         : m_code[pc + 1];
+    }
+
+    private int runIfLessEq(int pc)
+    {
+        m_pila -= 2;
+        return m_valores[m_pila] <= m_valores[m_pila + 1] ? pc + 2
+                                                          : m_code[pc + 1];
+    }
+
+    private int runIfGreater(int pc)
+    {
+        m_pila -= 2;
+        return m_valores[m_pila] > m_valores[m_pila + 1] ? pc + 2
+                                                         : m_code[pc + 1];
+    }
+
+    private int runIfGreaterEq(int pc)
+    {
+        m_pila -= 2;
+        return m_valores[m_pila] >= m_valores[m_pila + 1] ? pc + 2
+                                                          : m_code[pc + 1];
+    }
+
+    private int runIfEqual(int pc)
+    {
+        m_pila -= 2;
+        return m_valores[m_pila] == m_valores[m_pila + 1] ? pc + 2
+                                                          : m_code[pc + 1];
+    }
+
+    private int runIfUnequal(int pc)
+    {
+        m_pila -= 2;
+        return m_valores[m_pila] != m_valores[m_pila + 1] ? pc + 2
+                                                          : m_code[pc + 1];
+    }
+
+    private int runIfLessK(int pc)
+    {
+        return m_enteros[m_code[pc + 1]] < m_integers[m_code[pc + 2]] ?
+               pc + 4 : m_code[pc + 3];
+    }
+
+    private int runIfLessEqK(int pc)
+    {
+        return m_enteros[m_code[pc + 1]] <= m_integers[m_code[pc + 2]] ?
+               pc + 4 : m_code[pc + 3];
+    }
+
+    private int runIfGreaterK(int pc)
+    {
+        return m_enteros[m_code[pc + 1]] > m_integers[m_code[pc + 2]] ?
+               pc + 4 : m_code[pc + 3];
+    }
+
+    private int runIfGreaterEqK(int pc)
+    {
+        return m_enteros[m_code[pc + 1]] >= m_integers[m_code[pc + 2]] ?
+               pc + 4 : m_code[pc + 3];
+    }
+
+    private int runIfEqualK(int pc)
+    {
+        return m_enteros[m_code[pc + 1]] == m_integers[m_code[pc + 2]] ?
+               pc + 4 : m_code[pc + 3];
+    }
+
+    private int runIfUnequalK(int pc)
+    {
+        return m_enteros[m_code[pc + 1]] != m_integers[m_code[pc + 2]] ?
+               pc + 4 : m_code[pc + 3];
+    }
+
+    // The switch is in the loop, so each operation is dispatched
+    // by a jump of the loop, without calling a handler.
+    private void runSwitch()
+    {
+        int pc = 0;
+
+        try
+        {
+            while(pc < m_code.length)
+            {
+                switch(OPS[m_code[pc]])
+                {
+                    case NOP:            pc = runNext(pc); break;
+                    case STORE_INTEGER:  pc = runStoreInteger(pc); break;
+                    case STORE_STRING:   pc = runStoreString(pc); break;
+                    case PRINT_INTEGER:  pc = runPrintInteger(pc); break;
+                    case PRINT_BOOLEAN:  pc = runPrintBoolean(pc); break;
+                    case PRINT_STRING:   pc = runPrintString(pc); break;
+                    case IF:             pc = runIf(pc); break;
+                    case GOTO:           pc = runGoto(pc); break;
+                    case LOAD_INTEGER:   pc = runLoadInteger(pc); break;
+                    case LOAD_STRING:    pc = runLoadString(pc); break;
+                    case INTEGER:        pc = runInteger(pc); break;
+                    case STRING:         pc = runString(pc); break;
+                    case ADD:            pc = runAdd(pc); break;
+                    case CONCAT:         pc = runConcat(pc); break;
+                    case SUBTRACT:       pc = runSubtract(pc); break;
+                    case NEGATE:         pc = runNegate(pc); break;
+                    case MULTIPLY:       pc = runMultiply(pc); break;
+                    case DIVIDE:         pc = runDivide(pc); break;
+                    case EQUAL:          pc = runEqual(pc); break;
+                    case UNEQUAL:        pc = runUnequal(pc); break;
+                    case LESS:           pc = runLess(pc); break;
+                    case LESSEQ:         pc = runLessEq(pc); break;
+                    case GREATER:        pc = runGreater(pc); break;
+                    case GREATEREQ:      pc = runGreaterEq(pc); break;
+                    case NOT:            pc = runNot(pc); break;
+                    case OR:             pc = runOr(pc); break;
+                    case AND:            pc = runAnd(pc); break;
+                    case AND_THEN:       pc = runAndThen(pc); break;
+                    case OR_ELSE:        pc = runOrElse(pc); break;
+                    case INCREMENT:      pc = runIncrement(pc); break;
+                    case ADD_K:          pc = runAddK(pc); break;
+                    case SUBTRACT_K:     pc = runSubtractK(pc); break;
+                    case MULTIPLY_K:     pc = runMultiplyK(pc); break;
+                    case DIVIDE_K:       pc = runDivideK(pc); break;
+                    case LOAD_LOAD:      pc = runLoadLoad(pc); break;
+                    case IF_LESS:        pc = runIfLess(pc); break;
+                    case IF_LESSEQ:      pc = runIfLessEq(pc); break;
+                    case IF_GREATER:     pc = runIfGreater(pc); break;
+                    case IF_GREATEREQ:   pc = runIfGreaterEq(pc); break;
+                    case IF_EQUAL:       pc = runIfEqual(pc); break;
+                    case IF_UNEQUAL:     pc = runIfUnequal(pc); break;
+                    case IF_LESS_K:      pc = runIfLessK(pc); break;
+                    case IF_LESSEQ_K:    pc = runIfLessEqK(pc); break;
+                    case IF_GREATER_K:   pc = runIfGreaterK(pc); break;
+                    case IF_GREATEREQ_K: pc = runIfGreaterEqK(pc); break;
+                    case IF_EQUAL_K:     pc = runIfEqualK(pc); break;
+                    case IF_UNEQUAL_K:   pc = runIfUnequalK(pc); break;
+                    default: throw new AssertionError();
+                }
+            }
+        }
+        catch(ArithmeticException ex)
+        {
+            throw error(ex, pc);
+        }
+    }
+} // Execution
+
+// Result of a condition as a value of the stack.
+private static long bool(boolean b)
+{
+    return b ? 1 : 0;
+}
+
+} // Program
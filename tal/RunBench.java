@@ -0,0 +1,122 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Benchmark of the execution of programs.
+ * <p>It compares the ways of dispatching the operations of a compiled
+ * program: a table of handlers indexed by the operation, a handler
+ * stored with each operation, and a switch in the loop.
+ * @see Program.Dispatch
+ */
+public class RunBench
+{
+/**
+ * Generate a tal program with the indicated number of loops.
+ * @param loops number of loops
+ * @return text of the program
+ */
+private static String program(int loops)
+{
+    Random random = new Random(1);
+    StringBuilder s = new StringBuilder();
+    s.append("integer i\ninteger j\ninteger sum\nstring text\n");
+
+    for(int l = 0; l < loops; l++)
+    {
+        s.append("i = 0\n");
+        s.append("sum = 0\n");
+        s.append("while i < 200000 && sum >= 0\n");
+        s.append("    j = i * ").append(1 + random.nextInt(9))
+         .append(" + i / ").append(1 + random.nextInt(9)).append('\n');
+        s.append("    if j > ").append(random.nextInt(1000))
+         .append(" || i == ").append(random.nextInt(100)).append('\n');
+        s.append("        sum = sum + j - i\n");
+        s.append("    else\n");
+        s.append("        sum = sum + 1\n");
+        s.append("    end\n");
+        s.append("    i = i + 1\n");
+        s.append("end\n");
+        s.append("text = \"loop ").append(l).append(" \" + sum\n");
+        s.append("print text\n");
+    }
+
+    return s.toString();
+}
+
+private static void measure(Program program, Program.Dispatch dispatch)
+{
+    final int warmup = 5, iterations = 10;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(bytes);
+
+    for(int i = 0; i < warmup; i++)
+        program.run(out, dispatch);
+
+    long time = System.nanoTime();
+
+    for(int i = 0; i < iterations; i++)
+        program.run(out, dispatch);
+
+    time = (System.nanoTime() - time) / iterations;
+    System.out.printf("%-10s %8.2f ms\n", dispatch, time / 1e6);
+}
+
+/**
+ * Run the benchmark.
+ * <p>Each mode is measured in a new virtual machine, so the code
+ * compiled for a mode does not disturb the others.
+ * @param args Optional mode to measure and tal file to execute.
+ *             If the file is not indicated, a program will be generated.
+ * @throws IOException
+ * @throws InterruptedException
+ */
+public static void main(String args[])
+    throws IOException, InterruptedException
+{
+    List<String> params = new ArrayList<>(Arrays.asList(args));
+    Program.Dispatch mode = null;
+
+    for(Program.Dispatch d : Program.Dispatch.values())
+    {
+        if(!params.isEmpty() && params.get(0).equals(d.name()))
+        {
+            params.remove(0);
+            mode = d;
+        }
+    }
+
+    if(mode == null)
+    {
+        for(Program.Dispatch d : Program.Dispatch.values())
+        {
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"),
+                                  "bin", "java").toString());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(RunBench.class.getName());
+            command.add(d.name());
+            command.addAll(params);
+            new ProcessBuilder(command).inheritIO().start().waitFor();
+        }
+
+        return;
+    }
+
+    String text = params.size() == 1
+        ? new String(Files.readAllBytes(Paths.get(params.get(0))),
+                     StandardCharsets.UTF_8)
+        : program(10);
+
+    measure(TalParser.compile(text), mode);
+}
+
+} // RunBench
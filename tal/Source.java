@@ -0,0 +1,419 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+
+/**
+ * Text that must be analysed by a lexical analyser.
+ * <p>The characters are delivered in blocks, so the analyser does
+ * not need a call for each character it reads.
+ */
+public abstract class Source implements Closeable
+{
+/**
+ * Read characters into a portion of an array.
+ * This function blocks until some characters are available
+ * or the end of the text is reached.
+ * @param buffer Destination buffer
+ * @param offset Offset at which to start storing characters
+ * @param length Maximum number of characters to read
+ * @return number of characters read,
+ *         or -1 if the end of the text has been reached
+ * @throws IOException
+ */
+public abstract int read(char[] buffer, int offset, int length)
+    throws IOException;
+
+/**
+ * Close the text.
+ * @throws IOException
+ */
+@Override public void close() throws IOException
+{
+}
+
+/**
+ * Get the bytes of the text if they are in memory encoded in UTF-8,
+ * so the analyser can read them without a decoder.
+ * @return bytes of the text, or {@code null}
+ */
+ByteBuffer utf8()
+{
+    return null;
+}
+
+/**
+ * Get all the characters of the text if they are in memory.
+ * @return characters of the text, or {@code null}
+ *         if they are not in memory
+ */
+CharSequence text()
+{
+    return null;
+}
+
+/**
+ * Text read from a character stream.
+ * @param reader Character stream
+ * @return source of the text
+ */
+public static Source of(Reader reader)
+{
+    return new ReaderSource(reader);
+}
+
+/**
+ * Text stored in memory.
+ * @param text Characters of the text
+ * @return source of the text
+ */
+public static Source of(CharSequence text)
+{
+    return new CharsSource(text, 0, text.length());
+}
+
+/**
+ * Portion of a text stored in memory.
+ * @param text  Characters of the text
+ * @param start Index of the first character
+ * @param end   Index after the last character
+ * @return source of the text
+ */
+public static Source of(CharSequence text, int start, int end)
+{
+    return new CharsSource(text, start, end);
+}
+
+/**
+ * Text encoded in a buffer with the default charset.
+ * @param bytes Buffer with the encoded text
+ * @return source of the text
+ */
+public static Source of(ByteBuffer bytes)
+{
+    return of(bytes, Charset.defaultCharset());
+}
+
+/**
+ * Text encoded in a buffer.
+ * @param bytes   Buffer with the encoded text
+ * @param charset Charset of the text
+ * @return source of the text
+ */
+public static Source of(ByteBuffer bytes, Charset charset)
+{
+    return new BytesSource(bytes, charset);
+}
+
+/**
+ * Text encoded in UTF-8 in a buffer.
+ * <p>The analyser reads the bytes directly instead of decoding them,
+ * and the offsets of the tokens are byte offsets.
+ * Only the names of the tokens are decoded, and only when they
+ * are requested.
+ * @param bytes Buffer with the encoded text
+ * @return source of the text
+ */
+public static Source ofUtf8(ByteBuffer bytes)
+{
+    return new Utf8Source(bytes, null);
+}
+
+/**
+ * Text file encoded in UTF-8 mapped in memory.
+ * The analyser reads the bytes directly instead of decoding them.
+ * The file size is limited to 2 GB.
+ * @param file Text file
+ * @return source of the text
+ * @throws IOException
+ * @see #ofUtf8(ByteBuffer)
+ */
+public static Source mapUtf8(String file) throws IOException
+{
+    FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+    return new Utf8Source(channel.map(FileChannel.MapMode.READ_ONLY,
+                                      0, channel.size()), channel);
+}
+
+/**
+ * Text read from a channel with the default charset.
+ * @param channel Channel with the encoded text
+ * @return source of the text
+ */
+public static Source of(ReadableByteChannel channel)
+{
+    return of(channel, Charset.defaultCharset());
+}
+
+/**
+ * Text read from a channel.
+ * @param channel Channel with the encoded text
+ * @param charset Charset of the text
+ * @return source of the text
+ */
+public static Source of(ReadableByteChannel channel, Charset charset)
+{
+    return new ChannelSource(channel, charset);
+}
+
+/**
+ * Text file mapped in memory with the default charset.
+ * @param file Text file
+ * @return source of the text
+ * @throws IOException
+ */
+public static Source map(String file) throws IOException
+{
+    return map(file, Charset.defaultCharset());
+}
+
+/**
+ * Text file mapped in memory.
+ * @param file    Text file
+ * @param charset Charset of the text
+ * @return source of the text
+ * @throws IOException
+ */
+public static Source map(String file, Charset charset) throws IOException
+{
+    return map(new RandomAccessFile(file, "r").getChannel(), charset);
+}
+
+/**
+ * Text file mapped in memory.
+ * The file is mapped by regions, so its size is not limited.
+ * @param channel Channel of the text file
+ * @param charset Charset of the text
+ * @return source of the text
+ * @throws IOException
+ */
+public static Source map(FileChannel channel, Charset charset)
+    throws IOException
+{
+    return new MappedSource(channel, charset);
+}
+
+private static class ReaderSource extends Source
+{
+    private final Reader m_reader;
+
+    private ReaderSource(Reader reader)
+    {
+        m_reader = reader;
+    }
+
+    @Override public int read(char[] buffer, int offset, int length)
+        throws IOException
+    {
+        int n;
+
+        do n = m_reader.read(buffer, offset, length);
+        while(n == 0);
+
+        return n;
+    }
+
+    @Override public void close() throws IOException
+    {
+        m_reader.close();
+    }
+} // ReaderSource
+
+private static class CharsSource extends Source
+{
+    private final CharSequence m_text;
+    private final int m_start, m_end;
+    private int m_index;
+
+    private CharsSource(CharSequence text, int start, int end)
+    {
+        if(start < 0 || start > end || end > text.length())
+            throw new IndexOutOfBoundsException(start +", "+ end);
+
+        m_text  = text;
+        m_start = m_index = start;
+        m_end   = end;
+    }
+
+    @Override public int read(char[] buffer, int offset, int length)
+    {
+        int n = Math.min(length, m_end - m_index);
+
+        if(n <= 0)
+            return -1;
+
+        if(m_text instanceof String)
+        {
+            ((String)m_text).getChars(m_index, m_index + n, buffer, offset);
+        }
+        else
+        {
+            for(int i = 0; i < n; i++)
+                buffer[offset + i] = m_text.charAt(m_index + i);
+        }
+
+        m_index += n;
+        return n;
+    }
+
+    @Override CharSequence text()
+    {
+        return m_start == 0 && m_end == m_text.length()
+               ? m_text : CharBuffer.wrap(m_text, m_start, m_end);
+    }
+} // CharsSource
+
+/**
+ * Decodes the characters of a byte buffer.
+ * Subclasses can supply more bytes when the buffer is exhausted.
+ */
+private static class BytesSource extends Source
+{
+    private final CharsetDecoder m_decoder;
+    protected ByteBuffer m_bytes;
+    private boolean m_end, m_flushed;
+
+    private BytesSource(ByteBuffer bytes, Charset charset)
+    {
+        m_bytes = bytes;
+        m_decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Supply more bytes in {@code m_bytes}, keeping the remaining ones.
+     * @return {@code false} if there are no more bytes
+     * @throws IOException
+     */
+    protected boolean fill() throws IOException
+    {
+        return false;
+    }
+
+    @Override public int read(char[] buffer, int offset, int length)
+        throws IOException
+    {
+        CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+
+        while(out.position() == offset && !m_flushed)
+        {
+            CoderResult r = m_decoder.decode(m_bytes, out, m_end);
+
+            if(r.isOverflow())
+                break;
+            else if(!r.isUnderflow())
+                r.throwException();
+            else if(m_end)
+                m_flushed = m_decoder.flush(out).isUnderflow();
+            else if(!fill())
+                m_end = true;
+        }
+
+        int n = out.position() - offset;
+        return n == 0 && m_flushed ? -1 : n;
+    }
+} // BytesSource
+
+private static class Utf8Source extends BytesSource
+{
+    private final ByteBuffer m_utf8;
+    private final Closeable m_file;
+
+    private Utf8Source(ByteBuffer bytes, Closeable file)
+    {
+        super(bytes.duplicate(), StandardCharsets.UTF_8);
+        m_utf8 = bytes;
+        m_file = file;
+    }
+
+    @Override ByteBuffer utf8()
+    {
+        return m_utf8;
+    }
+
+    @Override public void close() throws IOException
+    {
+        if(m_file != null)
+            m_file.close();
+    }
+} // Utf8Source
+
+private static class ChannelSource extends BytesSource
+{
+    private final ReadableByteChannel m_channel;
+
+    private ChannelSource(ReadableByteChannel channel, Charset charset)
+    {
+        super(emptyBuffer(8192), charset);
+        m_channel = channel;
+    }
+
+    // Buffer without bytes to read, ready to be filled.
+    private static ByteBuffer emptyBuffer(int capacity)
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(capacity);
+        bytes.flip();
+        return bytes;
+    }
+
+    @Override protected boolean fill() throws IOException
+    {
+        m_bytes.compact();
+        int n;
+
+        do n = m_channel.read(m_bytes);
+        while(n == 0);
+
+        m_bytes.flip();
+        return n > 0;
+    }
+
+    @Override public void close() throws IOException
+    {
+        m_channel.close();
+    }
+} // ChannelSource
+
+private static class MappedSource extends BytesSource
+{
+    private static final long REGION = 1 << 30;
+    private final FileChannel m_channel;
+    private long m_position;
+
+    private MappedSource(FileChannel channel, Charset charset)
+        throws IOException
+    {
+        super(ByteBuffer.allocate(0), charset);
+        m_channel = channel;
+        fill();
+    }
+
+    @Override protected boolean fill() throws IOException
+    {
+        // The next region starts at the first byte not decoded,
+        // so a character is never split between two regions.
+        m_position += m_bytes.position();
+        long size = m_channel.size() - m_position;
+
+        if(size <= m_bytes.remaining())
+            return false;
+
+        m_bytes = m_channel.map(FileChannel.MapMode.READ_ONLY, m_position,
+                                Math.min(size, REGION));
+        return true;
+    }
+
+    @Override public void close() throws IOException
+    {
+        m_channel.close();
+    }
+} // MappedSource
+
+} // Source
@@ -0,0 +1,222 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.util.*;
+import static tal.Token.Type.*;
+
+/**
+ * Symbol table of a lexical analyser.
+ * <p>Reserved words are found with a perfect hash, and each different
+ * identifier gets a dense number, so the following phases can use
+ * arrays instead of hashing the names again.
+ */
+public class Symbols
+{
+private static final Token.Type KEYWORDS[] =
+    { INTEGER, STRING, IF, ELSE, WHILE, END, PRINT };
+
+// Perfect hash of the reserved words.
+private static final String WORDS[];
+private static final Token.Type WORD_TYPES[];
+private static final int WORD_FACTOR;
+private static final Map<Token.Type,String>
+    WORD_NAMES = new EnumMap<>(Token.Type.class);
+
+static
+{
+    // Search the smallest table without collisions.
+    String words[] = null;
+    Token.Type types[] = null;
+    int factor = 0;
+
+    for(int size = 8; words == null; size *= 2)
+    {
+        for(factor = 1; factor < 256; factor++)
+        {
+            words = new String[size];
+            types = new Token.Type[size];
+
+            for(Token.Type t : KEYWORDS)
+            {
+                String w = t.name().toLowerCase();
+                int h = wordHash(w, factor, size - 1);
+
+                if(words[h] != null)
+                {
+                    words = null;
+                    break;
+                }
+
+                words[h] = w;
+                types[h] = t;
+            }
+
+            if(words != null)
+                break;
+        }
+    }
+
+    WORDS = words;
+    WORD_TYPES = types;
+    WORD_FACTOR = factor;
+
+    for(int h = 0; h < words.length; h++)
+    {
+        if(words[h] != null)
+            WORD_NAMES.put(types[h], words[h]);
+    }
+}
+
+private static int wordHash(CharSequence s, int factor, int mask)
+{
+    int n = s.length();
+    return (s.charAt(0) * factor + s.charAt(n - 1) + n) & mask;
+}
+
+/**
+ * Get the type of a reserved word.
+ * @param s Name of the token
+ * @return type of the reserved word,
+ *         or {@code null} if {@code s} is not a reserved word
+ */
+public static Token.Type keyword(CharSequence s)
+{
+    int n = s.length();
+
+    if(n == 0)
+        return null;
+
+    int h = wordHash(s, WORD_FACTOR, WORDS.length - 1);
+    String w = WORDS[h];
+
+    if(w == null || w.length() != n)
+        return null;
+
+    for(int i = 0; i < n; i++)
+    {
+        if(w.charAt(i) != s.charAt(i))
+            return null;
+    }
+
+    return WORD_TYPES[h];
+}
+
+/**
+ * Get the name of a reserved word.
+ * @param t Type of the reserved word
+ * @return name of the reserved word
+ */
+public static String keywordName(Token.Type t)
+{
+    return WORD_NAMES.get(t);
+}
+
+// Names of the identifiers by number.
+private String[] m_names = new String[64];
+private int[] m_hashes = new int[64];
+private int m_size;
+
+// Open addressing table with the number of each identifier plus one.
+private int[] m_table = new int[128];
+
+/**
+ * Get the number of different identifiers.
+ * @return number of identifiers
+ */
+public int size()
+{
+    return m_size;
+}
+
+/**
+ * Get the name of an identifier.
+ * @param id Number of the identifier
+ * @return name of the identifier
+ */
+public String name(int id)
+{
+    if(id < 0 || id >= m_size)
+        throw new IndexOutOfBoundsException("Identifier "+ id);
+
+    return m_names[id];
+}
+
+/**
+ * Get the number of an identifier, adding it if it is new.
+ * @param s Name of the identifier
+ * @return number of the identifier
+ */
+public int id(CharSequence s)
+{
+    int n = s.length(), h = 0;
+
+    for(int i = 0; i < n; i++)
+        h = 31 * h + s.charAt(i);
+
+    int mask = m_table.length - 1,
+        i    = mix(h) & mask;
+
+    for(int id; (id = m_table[i] - 1) >= 0; i = (i + 1) & mask)
+    {
+        if(m_hashes[id] == h && equals(m_names[id], s))
+            return id;
+    }
+
+    if(m_size == m_names.length)
+    {
+        m_names  = Arrays.copyOf(m_names,  m_size * 2);
+        m_hashes = Arrays.copyOf(m_hashes, m_size * 2);
+    }
+
+    int id = m_size++;
+    m_names[id]  = s.toString();
+    m_hashes[id] = h;
+    m_table[i]   = id + 1;
+
+    if(m_size * 2 > m_table.length)
+        rehash();
+
+    return id;
+}
+
+private static boolean equals(String name, CharSequence s)
+{
+    int n = name.length();
+
+    if(n != s.length())
+        return false;
+
+    for(int i = 0; i < n; i++)
+    {
+        if(name.charAt(i) != s.charAt(i))
+            return false;
+    }
+
+    return true;
+}
+
+private static int mix(int h)
+{
+    return h ^ (h >>> 16);
+}
+
+private void rehash()
+{
+    m_table = new int[m_table.length * 2];
+    int mask = m_table.length - 1;
+
+    for(int id = 0; id < m_size; id++)
+    {
+        int i = mix(m_hashes[id]) & mask;
+
+        while(m_table[i] != 0)
+            i = (i + 1) & mask;
+
+        m_table[i] = id + 1;
+    }
+}
+
+} // Symbols
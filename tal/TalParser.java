@@ -0,0 +1,149 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import static tal.Token.Type.*;
+
+/**
+ * Syntactic analyser of the whole tal language.
+ * <p>The tools of this package use it to compile complete programs
+ * with the lexical analyser generated from the expressions of
+ * {@link #generator()}.
+ */
+class TalParser extends ASyn
+{
+/**
+ * Build a parser of the tokens read by a lexical analyser.
+ * @param lex Lexical analyser built by {@link #generator()}
+ */
+TalParser(ALex lex)
+{
+    super(lex);
+}
+
+/**
+ * Generator of an analyser of the whole tal language.
+ * @return generator with the expressions of the tokens
+ */
+static LexGenerator generator()
+{
+    LexGenerator g = new LexGenerator();
+    g.token("[\\l_][\\l\\d_]*", ID);
+    g.token("\\d+", INTVAL);
+    g.reject("\\d+[\\l_]");
+    g.token("{\"}[^\"\n]*{\"}", STRVAL);
+    g.token("=", ASIGN);
+    g.token("==|!=|<|>|<=|>=", REL);
+    g.token("!", NEG);
+    g.token("[+\\-]", SUM);
+    g.token("[*/]", MUL);
+    g.token("\\|\\|", OR);
+    g.token("&&", AND);
+    g.token("\\(", LPAR);
+    g.token("\\)", RPAR);
+    g.skip("\\s");
+    return g;
+}
+
+/**
+ * Compile a tal program.
+ * @param text Text of the program
+ * @return compiled program
+ * @throws IOException
+ */
+static Program compile(String text) throws IOException
+{
+    TalParser parser = new TalParser(generator().lexer(Source.of(text)));
+    parser.program();
+    parser.close();
+    return parser.codeProgram();
+}
+
+/**
+ * Analyse a program: the declarations of the variables
+ * followed by a block of statements.
+ */
+void program()
+{
+    for(;;)
+    {
+        if(tokenType() == INTEGER)
+        {
+            tokenRead(INTEGER);
+            tokenRead(ID);
+            codeVariableInteger();
+        }
+        else if(tokenType() == STRING)
+        {
+            tokenRead(STRING);
+            tokenRead(ID);
+            codeVariableString();
+        }
+        else
+        {
+            break;
+        }
+    }
+
+    block();
+    tokenRead(EOF);
+}
+
+// Statements until a token that cannot begin a statement.
+private void block()
+{
+    for(;;)
+    {
+        switch(tokenType())
+        {
+            case ID:
+                tokenRead(ID);
+                codeVariableAssignment();
+                tokenRead(ASIGN);
+                expression();
+                codeAssignment();
+                break;
+
+            case PRINT:
+                tokenRead(PRINT);
+                expression();
+                codePrint();
+                break;
+
+            case IF:
+                tokenRead(IF);
+                expression();
+                codeIf();
+                block();
+
+                if(tokenType() == ELSE)
+                {
+                    tokenRead(ELSE);
+                    codeElse();
+                    block();
+                }
+
+                tokenRead(END);
+                codeEnd();
+                break;
+
+            case WHILE:
+                tokenRead(WHILE);
+                codeWhile();
+                expression();
+                codeIf();
+                block();
+                tokenRead(END);
+                codeEnd();
+                break;
+
+            default:
+                return;
+        }
+    }
+}
+
+} // TalParser
@@ -61,24 +61,68 @@ public static enum Type
 public final Type type;
 /** Token name. */
 public final String name;
-/** Row where the token is in the analyzed file. */
-public final int row;
-/** Column where the token is in the analyzed file. */
-public final int column;
+/** Offset where the token is in the analyzed file. */
+public final int offset;
+/** Number of the identifier in the symbol table of the lexical
+ *  analyser, or -1 if the token is not an identifier. */
+public final int id;
+
+private final LineIndex m_lines;
 
 /**
  * Token constructor.
  * @param type   Token type
  * @param name   Token name
+ * @param offset Offset where the token is in the analyzed file
+ * @param lines  Index of the lines of the analyzed file
+ * @param id     Number of the identifier in the symbol table,
+ *               or -1 if the token is not an identifier
+ */
+Token(Type type, String name, int offset, LineIndex lines, int id)
+{
+    this.type   = type;
+    this.name   = name;
+    this.offset = offset;
+    this.id     = id;
+    m_lines     = lines;
+}
+
+/**
+ * Token constructor with a known position.
+ * <p>The offset of the token will be its column minus one.
+ * @param type   Token type
+ * @param name   Token name
  * @param row    Row where the token is in the analyzed file
  * @param column Column where the token is in the analyzed file
+ * @deprecated The lexical analyser builds the tokens from their
+ *             offsets, and their rows and columns are computed only
+ *             when they are requested by {@link #row()} and
+ *             {@link #column()}.
  */
+@Deprecated
 public Token(Type type, String name, int row, int column)
 {
-    this.type   = type;
-    this.name   = name;
-    this.row    = row;
-    this.column = column;
+    this(type, name, column - 1, new LineIndex(0, row), -1);
+}
+
+/**
+ * Get the row where the token is in the analyzed file.
+ * It is computed from the offset each time it is requested.
+ * @return row of the token
+ */
+public int row()
+{
+    return m_lines.row(offset);
+}
+
+/**
+ * Get the column where the token is in the analyzed file.
+ * It is computed from the offset each time it is requested.
+ * @return column of the token
+ */
+public int column()
+{
+    return m_lines.column(offset);
 }
 
 /**
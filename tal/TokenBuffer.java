@@ -0,0 +1,557 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Tokens of a text packed in an array of integers.
+ * <p>The names of the tokens are not stored: they are taken from
+ * the text when they are requested.
+ * <p>The array has a gap at the place of the last edit, as the
+ * array of {@link LineIndex}, so the tokens after an edit are not
+ * moved. Their offsets are stored without the displacement of the
+ * edits.
+ * @see ALex#tokenize()
+ */
+public class TokenBuffer
+{
+// Fields of each token.
+private static final int TYPE   = 0,
+                         START  = 1,
+                         OFFSET = 2,
+                         LENGTH = 3,
+                         SYMBOL = 4,
+                         FIELDS = 5;
+
+private static final Token.Type TYPES[] = Token.Type.values();
+
+private CharSequence m_text;
+private final int m_textOffset;
+private final ByteBuffer m_bytes;
+private final LineIndex m_lines;
+private final Symbols m_symbols;
+private int[] m_data = new int[FIELDS * 1024];
+private int m_size, m_gap, m_shift;
+
+// Names that do not match the characters of the text,
+// or null while all the names match.
+private String[] m_names;
+
+/**
+ * Build an empty buffer.
+ * @param text       Characters of the analysed text
+ * @param textOffset Offset of the first character of {@code text}
+ * @param lines      Index of the lines of the text
+ * @param symbols    Symbol table of the identifiers
+ */
+TokenBuffer(CharSequence text, int textOffset,
+            LineIndex lines, Symbols symbols)
+{
+    m_text = text;
+    m_textOffset = textOffset;
+    m_bytes = null;
+    m_lines = lines;
+    m_symbols = symbols;
+}
+
+/**
+ * Build an empty buffer for a text encoded in UTF-8.
+ * The offsets and lengths of the tokens are in bytes.
+ * @param bytes   Bytes of the analysed text
+ * @param lines   Index of the lines of the text
+ * @param symbols Symbol table of the identifiers
+ */
+TokenBuffer(ByteBuffer bytes, LineIndex lines, Symbols symbols)
+{
+    m_text = null;
+    m_textOffset = 0;
+    m_bytes = bytes;
+    m_lines = lines;
+    m_symbols = symbols;
+}
+
+/**
+ * Add a token at the end of the buffer.
+ * @param type   Token type
+ * @param start  Offset where the analyser began to read the token
+ * @param offset Offset of the token in the text
+ * @param length Length of the token in the text
+ * @param id     Number of the identifier, or -1
+ * @param name   Name of the token if it does not match the text,
+ *               or {@code null}
+ */
+void add(Token.Type type, int start, int offset, int length,
+         int id, String name)
+{
+    moveGap(m_size);
+    insert(type.ordinal(), start, offset, length, id, name);
+}
+
+// Add a token at the gap.
+private void insert(int type, int start, int offset, int length,
+                    int id, String name)
+{
+    if(m_size == capacity())
+        grow();
+
+    int i = m_gap * FIELDS;
+    m_data[i + TYPE]   = type;
+    m_data[i + START]  = start;
+    m_data[i + OFFSET] = offset;
+    m_data[i + LENGTH] = length;
+    m_data[i + SYMBOL] = id;
+
+    if(name != null && m_names == null)
+        m_names = new String[capacity()];
+
+    if(m_names != null)
+        m_names[m_gap] = name;
+
+    m_gap++;
+    m_size++;
+}
+
+// Number of tokens that the array can keep.
+private int capacity()
+{
+    return m_data.length / FIELDS;
+}
+
+// Double the size of the gap, keeping the tokens after it at the end.
+private void grow()
+{
+    int size  = capacity() * 2,
+        after = m_size - m_gap,
+        slot  = slot(m_gap);
+
+    int[] data = new int[size * FIELDS];
+    System.arraycopy(m_data, 0, data, 0, m_gap * FIELDS);
+    System.arraycopy(m_data, slot * FIELDS, data, (size - after) * FIELDS,
+                     after * FIELDS);
+
+    if(m_names != null)
+    {
+        String[] names = new String[size];
+        System.arraycopy(m_names, 0, names, 0, m_gap);
+        System.arraycopy(m_names, slot, names, size - after, after);
+        m_names = names;
+    }
+
+    m_data = data;
+}
+
+// Move the gap before a token, moving the tokens between them.
+private void moveGap(int index)
+{
+    int length = capacity() - m_size;
+
+    if(index < m_gap)
+    {
+        move(index, index + length, m_gap - index, -m_shift);
+    }
+    else if(index > m_gap)
+    {
+        move(m_gap + length, m_gap, index - m_gap, m_shift);
+    }
+
+    m_gap = index;
+
+    if(m_gap == m_size)
+        m_shift = 0;
+}
+
+// Move tokens in the array, and add a displacement to their offsets.
+private void move(int from, int to, int count, int shift)
+{
+    System.arraycopy(m_data, from * FIELDS, m_data, to * FIELDS,
+                     count * FIELDS);
+
+    if(m_names != null)
+        System.arraycopy(m_names, from, m_names, to, count);
+
+    for(int i = to * FIELDS; shift != 0 && i < (to + count) * FIELDS;
+        i += FIELDS)
+    {
+        m_data[i + START]  += shift;
+        m_data[i + OFFSET] += shift;
+    }
+}
+
+// Index in the array of a token.
+private int slot(int i)
+{
+    return i < m_gap ? i : i + capacity() - m_size;
+}
+
+/**
+ * Add the first tokens of another buffer at the end of this buffer.
+ * The identifiers are added to the symbol table of this buffer,
+ * and the lines to its index.
+ * @param b     Buffer with the tokens to add
+ * @param count Number of tokens to add
+ */
+void append(TokenBuffer b, int count)
+{
+    int ids[] = new int[b.m_symbols.size()];
+    Arrays.fill(ids, -1);
+
+    for(int i = 0; i < count; i++)
+    {
+        int id = b.id(i);
+
+        if(id >= 0)
+        {
+            if(ids[id] < 0)
+                ids[id] = m_symbols.id(b.m_symbols.name(id));
+
+            id = ids[id];
+        }
+
+        add(b.type(i), b.start(i), b.offset(i), b.length(i),
+            id, b.storedName(i));
+    }
+
+    m_lines.append(b.m_lines);
+}
+
+/**
+ * Replace a range of tokens by the tokens of another buffer with the
+ * same symbol table, and move the offsets of the following tokens.
+ * Only the tokens between the range and the previous edit are moved
+ * in the array.
+ * @param from  Index of the first token to replace
+ * @param to    Index after the last token to replace
+ * @param b     Buffer with the new tokens
+ * @param shift Displacement of the offsets of the following tokens
+ */
+void replace(int from, int to, TokenBuffer b, int shift)
+{
+    if(b.m_symbols != m_symbols)
+        throw new AssertionError("The symbol tables are different.");
+
+    // The replaced tokens join the gap.
+    moveGap(to);
+    m_gap = from;
+    m_size -= to - from;
+    m_shift += shift;
+
+    for(int i = 0; i < b.m_size; i++)
+    {
+        insert(b.get(i, TYPE), b.start(i), b.offset(i), b.length(i),
+               b.id(i), b.storedName(i));
+    }
+}
+
+// Name of a token that does not match the text, or null.
+private String storedName(int i)
+{
+    return m_names == null ? null : m_names[slot(i)];
+}
+
+/**
+ * Get the characters of the analysed text.
+ * @return characters of the text,
+ *         or {@code null} if the text is encoded in UTF-8
+ */
+CharSequence text()
+{
+    return m_text;
+}
+
+/**
+ * Get the characters of the text to edit them in place.
+ * The first time, they are copied to a {@link GapText}.
+ * @return characters of the text
+ */
+GapText editText()
+{
+    if(m_text == null)
+        throw new IllegalArgumentException("The text is not available.");
+    else if(!(m_text instanceof GapText))
+        m_text = new GapText(m_text);
+
+    return (GapText)m_text;
+}
+
+/**
+ * Get the offset of the first character of {@link #text text}.
+ * @return offset of the text
+ */
+int textOffset()
+{
+    return m_textOffset;
+}
+
+/**
+ * Get the index of the lines of the text.
+ * @return index of the lines
+ */
+LineIndex lines()
+{
+    return m_lines;
+}
+
+/**
+ * Get the symbol table of the identifiers.
+ * @return symbol table
+ */
+Symbols symbols()
+{
+    return m_symbols;
+}
+
+/**
+ * Search the token that began to be read at an offset.
+ * @param start Offset where the token began to be read
+ * @return index of the token if it is found, otherwise
+ *         {@code -(insertion point) - 1} as {@code Arrays.binarySearch}
+ */
+int search(int start)
+{
+    int low = 0, high = m_size - 1;
+
+    while(low <= high)
+    {
+        int mid = (low + high) >>> 1,
+            s   = start(mid);
+
+        if(s < start)
+            low = mid + 1;
+        else if(s > start)
+            high = mid - 1;
+        else
+            return mid;
+    }
+
+    return -(low + 1);
+}
+
+/**
+ * Get the number of tokens.
+ * @return number of tokens
+ */
+public int size()
+{
+    return m_size;
+}
+
+/**
+ * Get the type of a token.
+ * @param i Index of the token
+ * @return type of the token
+ */
+public Token.Type type(int i)
+{
+    return TYPES[get(i, TYPE)];
+}
+
+/**
+ * Get the offset where the analyser began to read a token,
+ * that is, the offset after the previous token.
+ * @param i Index of the token
+ * @return offset of the first character read for the token
+ */
+int start(int i)
+{
+    return get(i, START);
+}
+
+/**
+ * Get the offset of a token in the text.
+ * @param i Index of the token
+ * @return offset of the first character of the token
+ */
+public int offset(int i)
+{
+    return get(i, OFFSET);
+}
+
+/**
+ * Get the length of a token in the text.
+ * It is the length of its name, unless the analyser discarded
+ * characters inside the token.
+ * @param i Index of the token
+ * @return length of the token in the text
+ */
+public int length(int i)
+{
+    return get(i, LENGTH);
+}
+
+/**
+ * Get the row where a token is in the text.
+ * It is computed from the offset each time it is requested.
+ * @param i Index of the token
+ * @return row of the token
+ */
+public int row(int i)
+{
+    return m_lines.row(offset(i));
+}
+
+/**
+ * Get the column where a token is in the text.
+ * It is computed from the offset each time it is requested.
+ * @param i Index of the token
+ * @return column of the token
+ */
+public int column(int i)
+{
+    return m_lines.column(offset(i));
+}
+
+/**
+ * Get the number of the identifier of a token.
+ * @param i Index of the token
+ * @return number of the identifier in the symbol table,
+ *         or -1 if the token is not an identifier
+ */
+public int id(int i)
+{
+    return get(i, SYMBOL);
+}
+
+/**
+ * Get the name of a token.
+ * The name of identifiers and reserved words is taken from the
+ * symbol table, and the other names are taken from the text each
+ * time they are requested.
+ * @param i Index of the token
+ * @return name of the token
+ */
+public String name(int i)
+{
+    int id = id(i);
+
+    if(id >= 0)
+        return m_symbols.name(id);
+
+    String name = Symbols.keywordName(type(i));
+
+    if(name != null)
+        return name;
+
+    name = storedName(i);
+
+    if(name != null)
+        return name;
+
+    if(m_bytes != null)
+    {
+        byte b[] = new byte[length(i)];
+
+        for(int j = 0; j < b.length; j++)
+            b[j] = m_bytes.get(offset(i) + j);
+
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    int start = offset(i) - m_textOffset;
+    return m_text.subSequence(start, start + length(i)).toString();
+}
+
+/**
+ * Build the token object of an element of the buffer.
+ * @param i Index of the token
+ * @return token
+ */
+public Token token(int i)
+{
+    return new Token(type(i), name(i), offset(i), m_lines, id(i));
+}
+
+/**
+ * Get a cursor positioned at the first token.
+ * @return cursor to traverse the tokens
+ */
+public Cursor cursor()
+{
+    return new Cursor();
+}
+
+private int get(int i, int field)
+{
+    if(i < 0 || i >= m_size)
+        throw new IndexOutOfBoundsException("Token "+ i);
+
+    int value = m_data[slot(i) * FIELDS + field];
+
+    if(i >= m_gap && (field == START || field == OFFSET))
+        value += m_shift;
+
+    return value;
+}
+
+/**
+ * Cursor to traverse the tokens of the buffer in order.
+ * The cursor does not advance beyond the last token.
+ */
+public class Cursor
+{
+    private int m_index;
+
+    private Cursor()
+    {
+    }
+
+    /**
+     * Get the index of the current token.
+     * @return index of the current token
+     */
+    public int index()
+    {
+        return m_index;
+    }
+
+    /**
+     * Advance to the next token.
+     */
+    public void next()
+    {
+        if(m_index < m_size - 1)
+            m_index++;
+    }
+
+    /**
+     * Get the type of the current token.
+     * @return type of the current token
+     */
+    public Token.Type type()
+    {
+        return TokenBuffer.this.type(m_index);
+    }
+
+    /**
+     * Get the name of the current token.
+     * @return name of the current token
+     */
+    public String name()
+    {
+        return TokenBuffer.this.name(m_index);
+    }
+
+    /**
+     * Get the row of the current token.
+     * @return row of the current token
+     */
+    public int row()
+    {
+        return TokenBuffer.this.row(m_index);
+    }
+
+    /**
+     * Get the column of the current token.
+     * @return column of the current token
+     */
+    public int column()
+    {
+        return TokenBuffer.this.column(m_index);
+    }
+} // Cursor
+
+} // TokenBuffer
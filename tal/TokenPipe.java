@@ -0,0 +1,195 @@
+/*
+ * Released under the MIT License.
+ * Copyright 2026 Oscar Vega-Gisbert.
+ */
+package tal;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Tokens read by a lexical analyser running in its own thread.
+ * <p>The analyser puts the tokens in batches into a bounded queue
+ * without locks, because there is only one producer and one consumer,
+ * so the syntactic analysis and the code generation are done while
+ * the text is being read and analysed.
+ * <p>The errors of the analyser are thrown by {@link #read read} when
+ * the tokens before the error have been read, and the end of the text
+ * is returned again each time it is read, as {@code ALex} does.
+ */
+public class TokenPipe implements Closeable
+{
+private static final int BATCH_SIZE = 256,
+                         QUEUE_SIZE = 64;
+
+private static class Batch
+{
+    private final Token[] tokens = new Token[BATCH_SIZE];
+    private int size;
+    private Throwable error;
+} // Batch
+
+private final ALex m_lex;
+private final Thread m_thread;
+private volatile boolean m_closed;
+
+// Queue of batches: the producer only writes the tail
+// and the consumer only writes the head.
+private final Batch[] m_queue = new Batch[QUEUE_SIZE];
+private final AtomicLong m_head = new AtomicLong(),
+                         m_tail = new AtomicLong();
+
+// Batch that is being read by the consumer.
+private Batch m_batch;
+private int m_index;
+private Token m_eof;
+
+/**
+ * Start the lexical analysis in a new thread.
+ * @param lex Lexical analyser
+ */
+public TokenPipe(ALex lex)
+{
+    m_lex = lex;
+    m_thread = new Thread(this::produce, "TokenPipe");
+    m_thread.setDaemon(true);
+    m_thread.start();
+}
+
+private void produce()
+{
+    Batch batch = new Batch();
+
+    try
+    {
+        for(;;)
+        {
+            Token t = m_lex.read();
+            batch.tokens[batch.size++] = t;
+
+            if(t.type == Token.Type.EOF)
+                break;
+
+            if(batch.size == BATCH_SIZE)
+            {
+                if(!put(batch))
+                    return;
+
+                batch = new Batch();
+            }
+        }
+    }
+    catch(Throwable ex)
+    {
+        batch.error = ex;
+    }
+
+    put(batch);
+}
+
+private boolean put(Batch batch)
+{
+    long tail = m_tail.get();
+
+    for(int i = 0; tail - m_head.get() == QUEUE_SIZE || m_closed; i++)
+    {
+        if(m_closed)
+            return false;
+
+        pause(i);
+    }
+
+    m_queue[(int)(tail % QUEUE_SIZE)] = batch;
+    m_tail.lazySet(tail + 1);
+    return true;
+}
+
+private Batch take()
+{
+    long head = m_head.get();
+
+    for(int i = 0; head == m_tail.get(); i++)
+        pause(i);
+
+    int slot = (int)(head % QUEUE_SIZE);
+    Batch batch = m_queue[slot];
+    m_queue[slot] = null;
+    m_head.lazySet(head + 1);
+    return batch;
+}
+
+// Wait for the other thread, first yielding the processor
+// and then sleeping a little.
+private static void pause(int i)
+{
+    if(i < 100)
+        Thread.yield();
+    else
+        LockSupport.parkNanos(50000);
+}
+
+/**
+ * Read the following token.
+ * @return read token
+ * @throws IOException
+ */
+public Token read() throws IOException
+{
+    if(m_eof != null)
+        return m_eof;
+
+    if(m_batch == null || m_index == m_batch.size)
+    {
+        if(m_batch != null && m_batch.error != null)
+            throw error(m_batch.error);
+
+        m_batch = take();
+        m_index = 0;
+
+        if(m_batch.size == 0)
+            throw error(m_batch.error);
+    }
+
+    Token t = m_batch.tokens[m_index++];
+
+    if(t.type == Token.Type.EOF)
+        m_eof = t;
+
+    return t;
+}
+
+private static IOException error(Throwable ex)
+{
+    if(ex instanceof IOException)
+        return (IOException)ex;
+    else if(ex instanceof RuntimeException)
+        throw (RuntimeException)ex;
+    else if(ex instanceof Error)
+        throw (Error)ex;
+    else
+        throw new RuntimeException(ex);
+}
+
+/**
+ * Stop the lexical analysis and close the text.
+ * @throws IOException
+ */
+@Override public void close() throws IOException
+{
+    m_closed = true;
+
+    try
+    {
+        m_thread.join();
+    }
+    catch(InterruptedException ex)
+    {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+    }
+
+    m_lex.close();
+}
+
+} // TokenPipe